@@ -12,6 +12,16 @@ repositories {
 
 version = "1.0.1"
 
+// Microbenchmarks of the storage and the codecs, see src/jmh
+sourceSets {
+    create("jmh") {
+        compileClasspath += getByName("main").output
+        runtimeClasspath += getByName("main").output
+    }
+}
+
+configurations["jmhCompile"].extendsFrom(configurations["compile"])
+
 dependencies {
     // Our beloved one-nio
     compile("ru.odnoklassniki:one-nio:1.0.2")
@@ -35,6 +45,13 @@ dependencies {
 
     compile("org.slf4j:slf4j-api:1.7.+")
     compile("ch.qos.logback:logback-classic:1.1.3")
+
+    // Latency histograms
+    compile("org.hdrhistogram:HdrHistogram:2.1.10")
+
+    // JMH
+    "jmhCompile"("org.openjdk.jmh:jmh-core:1.21")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.21")
 }
 
 tasks {
@@ -42,6 +59,26 @@ tasks {
         maxHeapSize = "128m"
         useJUnitPlatform()
     }
+
+    // Load of the in-process cluster, options are given as -Dload.* properties, see LoadGenerator,
+    // and -Dkv.* properties configure the service, e.g. -Dkv.execution.mode=virtual
+    "load"(JavaExec::class) {
+        classpath = sourceSets["main"].runtimeClasspath
+        main = "ru.mail.polis.LoadGenerator"
+        maxHeapSize = "128m"
+        // The virtual mode needs Java 21, which Gradle 4 does not run on, e.g. -PloadJavaHome=/usr/lib/jvm/java-21
+        (project.findProperty("loadJavaHome") as String?)?.let { executable = "$it/bin/java" }
+        systemProperties(System.getProperties()
+            .filterKeys { it.toString().startsWith("load.") || it.toString().startsWith("kv.") }
+            .mapKeys { it.key.toString() })
+    }
+
+    // Microbenchmarks, JMH options are given as -PjmhArgs, e.g. -PjmhArgs="KVDaoImpl -t 4 -p valueSize=1024"
+    "jmh"(JavaExec::class) {
+        classpath = sourceSets["jmh"].runtimeClasspath
+        main = "org.openjdk.jmh.Main"
+        args = (project.findProperty("jmhArgs") as String?)?.split(" ")?.filter { it.isNotEmpty() } ?: emptyList()
+    }
 }
 
 application {
@@ -0,0 +1,110 @@
+package ru.mail.polis.alexantufiev.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.mail.polis.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of reads and writes of {@link KVDaoImpl} on a prefilled storage.
+ * <p>
+ * Reads ask for a missing key with probability {@code 1 - hitRatio}. The count of threads is set by the
+ * {@code -t} option of JMH, all threads share one storage.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx128m")
+public class KVDaoImplBenchmark {
+
+    private static final int KEYS = 10_000;
+
+    @Param({"16", "128"})
+    private int keySize;
+
+    @Param({"100", "4096", "65536"})
+    private int valueSize;
+
+    @Param({"1.0", "0.5"})
+    private double hitRatio;
+
+    private File data;
+    private KVDaoImpl dao;
+    private byte[][] keys;
+    private byte[][] missingKeys;
+    private byte[] value;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = Files.createTempDirectory();
+        dao = new KVDaoImpl(data);
+        keys = randomKeys();
+        missingKeys = randomKeys();
+        value = new byte[valueSize];
+        ThreadLocalRandom.current().nextBytes(value);
+        for (byte[] key : keys) {
+            dao.upsert(key, value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dao.close();
+        Files.recursiveDelete(data);
+    }
+
+    private byte[][] randomKeys() {
+        byte[][] randomKeys = new byte[KEYS][keySize];
+        for (byte[] key : randomKeys) {
+            ThreadLocalRandom.current().nextBytes(key);
+        }
+        return randomKeys;
+    }
+
+    private byte[] randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(KEYS)];
+    }
+
+    @Benchmark
+    public byte[] get() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        byte[] key = random.nextDouble() < hitRatio ? randomKey() : missingKeys[random.nextInt(KEYS)];
+        try {
+            return dao.get(key);
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public void upsert() {
+        dao.upsert(randomKey(), value);
+    }
+
+    @Benchmark
+    public void remove() {
+        dao.remove(randomKey());
+    }
+}
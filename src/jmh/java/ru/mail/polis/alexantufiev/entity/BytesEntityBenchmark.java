@@ -0,0 +1,75 @@
+package ru.mail.polis.alexantufiev.entity;
+
+import jetbrains.exodus.ByteIterable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of encoding and decoding of {@link BytesEntity} in its binary layout.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx128m")
+public class BytesEntityBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    private int valueSize;
+
+    private BytesEntity entity;
+    private byte[] encoded;
+    private ByteIterable record;
+
+    @Setup
+    public void setUp() {
+        byte[] value = new byte[valueSize];
+        ThreadLocalRandom.current().nextBytes(value);
+        entity = new BytesEntity(value, BytesEntity.currentTime(), false, 3);
+        encoded = entity.encode();
+        record = entity.toByteIterable();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return entity.encode();
+    }
+
+    @Benchmark
+    public BytesEntity decode() {
+        return BytesEntity.decode(encoded);
+    }
+
+    /**
+     * Read path of the storage: a record of Xodus to an entity.
+     */
+    @Benchmark
+    public BytesEntity fromRecord() {
+        return new BytesEntity(record);
+    }
+
+    /**
+     * Read of metadata without decoding of the value.
+     */
+    @Benchmark
+    public long getTime() {
+        return BytesEntity.getTime(record);
+    }
+}
@@ -0,0 +1,41 @@
+package ru.mail.polis.alexantufiev.entity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of parsing of the {@code replicas} parameter by {@link Replica#of}, an empty value means the default quorum.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx128m")
+public class ReplicaBenchmark {
+
+    private static final int COUNT_OF_NODES = 3;
+
+    @Param({"", "2/3", "3/3"})
+    private String replicas;
+
+    @Benchmark
+    public Optional<Replica> of() {
+        return Replica.of(replicas, COUNT_OF_NODES, false);
+    }
+}
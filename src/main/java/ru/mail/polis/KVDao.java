@@ -16,10 +16,17 @@
 
 package ru.mail.polis;
 
+import jetbrains.exodus.ByteIterable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.mail.polis.alexantufiev.dao.RecordIterator;
+import ru.mail.polis.alexantufiev.dao.RecordListener;
 import ru.mail.polis.alexantufiev.entity.BytesEntity;
+import ru.mail.polis.alexantufiev.entity.Record;
+import ru.mail.polis.alexantufiev.metrics.MetricsRegistry;
 
 import java.io.Closeable;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -46,6 +53,23 @@ public interface KVDao extends Closeable {
      */
     void upsert(@NotNull byte[] key, @NotNull byte[] value);
 
+    /**
+     * Insert {@code entity} by {@code key} into storage if the stored entity is older.
+     *
+     * @param key    key
+     * @param entity entity with its version, it may be a tombstone
+     * @return {@code true} if the entity was written
+     */
+    boolean upsert(@NotNull byte[] key, @NotNull BytesEntity entity);
+
+    /**
+     * Insert entities of {@code records} into storage in one transaction, an entity is written if the stored one
+     * is older.
+     *
+     * @param records keys with entities, entities may be tombstones
+     */
+    void upsert(@NotNull List<Record> records);
+
     /**
      * Delete a entity by {@code key} from storage.
      *
@@ -55,6 +79,100 @@ public interface KVDao extends Closeable {
 
     BytesEntity getEntity(@NotNull byte[] key);
 
+    /**
+     * Get the stored record, including a tombstone, by {@code key} in the binary layout of {@link BytesEntity}
+     * without decoding it, so the value can be written from the record without a copy.
+     *
+     * @param key key
+     * @return record, its array must not be modified
+     * @throws NoSuchElementException if record not found
+     */
+    @NotNull
+    ByteIterable getRecord(@NotNull byte[] key) throws NoSuchElementException;
+
+    /**
+     * Get entities, including tombstones, by {@code keys} in one transaction.
+     *
+     * @param keys keys
+     * @return entities in the order of keys, {@code null} for a key without entity
+     */
+    @NotNull
+    List<BytesEntity> getEntities(@NotNull List<byte[]> keys);
+
+    /**
+     * Remember a write which was not delivered to {@code node}. Only the newest hint of a key is kept.
+     *
+     * @param node   endpoint of the node
+     * @param key    key
+     * @param entity entity with its version
+     */
+    void addHint(@NotNull String node, @NotNull byte[] key, @NotNull BytesEntity entity);
+
+    /**
+     * Get writes which were not delivered to {@code node}.
+     *
+     * @param node  endpoint of the node
+     * @param limit max count of hints
+     * @return hints ordered by key
+     */
+    @NotNull
+    List<Record> getHints(@NotNull String node, int limit);
+
+    /**
+     * Forget delivered writes in one transaction, except the ones which were replaced with newer ones.
+     *
+     * @param node  endpoint of the node
+     * @param hints delivered hints
+     */
+    void removeHints(@NotNull String node, @NotNull List<Record> hints);
+
+    /**
+     * Iterate over entities with keys from {@code start} inclusive to {@code end} exclusive in the order of keys,
+     * tombstones are skipped. Records are read by pages in short transactions, so a record written during
+     * the iteration may be seen or not, and the iterator must be closed if it is not exhausted.
+     *
+     * @param start first key
+     * @param end   key after the last one or {@code null} for the end of storage
+     * @return iterator over records
+     */
+    @NotNull
+    RecordIterator range(@NotNull byte[] start, @Nullable byte[] end);
+
+    /**
+     * Iterate over records, including tombstones, with keys whose {@link ru.mail.polis.alexantufiev.entity.Hashing}
+     * hash is from {@code start} inclusive to {@code end} exclusive as unsigned numbers, in the order of hashes and
+     * then keys. Keys are indexed by their hashes, so only the records of the range are read. The iterator must be
+     * closed if it is not exhausted.
+     *
+     * @param start first hash
+     * @param end   hash after the last one or {@code 0} for the greatest hash
+     * @param after key of the range to start after or {@code null} to start at {@code start}
+     * @return iterator over records
+     */
+    @NotNull
+    RecordIterator hashRange(long start, long end, @Nullable byte[] after);
+
+    /**
+     * Visit all records of storage, including tombstones, with {@code null} as the replaced record.
+     *
+     * @param visitor visitor of records
+     */
+    void scan(@NotNull RecordListener visitor);
+
+    /**
+     * Set the listener which is called after every committed write of a record.
+     *
+     * @param listener listener or {@code null} to remove it
+     */
+    void setListener(@Nullable RecordListener listener);
+
+    /**
+     * Register metrics of storage, e.g. time of transactions.
+     *
+     * @param registry metrics of the node
+     */
+    void registerMetrics(@NotNull MetricsRegistry registry);
+
     boolean isAccessible();
 
     void isAccessible(boolean isAccessible);
@@ -17,6 +17,7 @@
 package ru.mail.polis;
 
 import org.jetbrains.annotations.NotNull;
+import ru.mail.polis.alexantufiev.service.ExecutionMode;
 import ru.mail.polis.alexantufiev.service.KVServiceImpl;
 
 import java.io.IOException;
@@ -29,6 +30,11 @@ import java.util.Set;
  */
 final class KVServiceFactory {
     private static final long MAX_HEAP = 128 * 1024 * 1024;
+    /**
+     * System property with the execution mode of the service: {@code pool} (default) or {@code virtual},
+     * which needs a Java 21 runtime, see {@link ExecutionMode#VIRTUAL_THREADS}.
+     */
+    static final String EXECUTION_MODE = "kv.execution.mode";
 
     private KVServiceFactory() {
         // Not supposed to be instantiated
@@ -56,6 +62,6 @@ final class KVServiceFactory {
             throw new IllegalArgumentException("Port out of range");
         }
 
-        return new KVServiceImpl(port,topology, dao);
+        return new KVServiceImpl(port, topology, dao, ExecutionMode.of(System.getProperty(EXECUTION_MODE, "pool")));
     }
 }
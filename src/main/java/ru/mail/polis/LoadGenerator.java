@@ -0,0 +1,305 @@
+package ru.mail.polis;
+
+import one.nio.http.HttpClient;
+import one.nio.http.Response;
+import one.nio.net.ConnectionString;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts storage cluster in process and drives {@code /v0/entity} with a mix of GET, PUT and DELETE requests,
+ * then reports percentiles of latency of every method.
+ * <p>
+ * Without {@code -Dload.rate} every client sends the next request as soon as the previous one is answered
+ * (closed loop). With the rate the clients send requests on a fixed schedule (open loop), and the latency is
+ * measured from the time when the request should have been sent, so a stall of the cluster is counted for every
+ * request which it delayed and is not hidden by coordinated omission.
+ * <p>
+ * Options:
+ * <ul>
+ * <li>{@code load.nodes} - count of nodes, 3 by default;</li>
+ * <li>{@code load.clients} - count of concurrent clients, 64 by default;</li>
+ * <li>{@code load.duration.ms} - duration of the load, 30 seconds by default;</li>
+ * <li>{@code load.rate} - requests per second of the open loop, 0 means closed loop;</li>
+ * <li>{@code load.get}, {@code load.put}, {@code load.delete} - weights of methods, 70/25/5 by default;</li>
+ * <li>{@code load.keys} - count of keys, they are written before the load, 10000 by default;</li>
+ * <li>{@code load.zipf} - exponent of Zipfian distribution of keys from 0 to 1 exclusive, 0 means uniform,
+ * 0.99 by default;</li>
+ * <li>{@code load.replicas} - the {@code replicas} parameter, the default quorum if empty;</li>
+ * <li>{@code load.value.size} - size of values, 256 bytes by default;</li>
+ * <li>{@code load.modes} - execution modes of the service separated by commas, e.g. {@code pool,virtual},
+ * every mode is loaded by its own cluster one after another, the mode of {@code kv.execution.mode}
+ * by default.</li>
+ * </ul>
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public final class LoadGenerator {
+    private static final int FIRST_PORT = 8290;
+    private static final int NODES = Integer.getInteger("load.nodes", 3);
+    private static final int CLIENTS = Integer.getInteger("load.clients", 64);
+    private static final long DURATION_MILLIS = Long.getLong("load.duration.ms", 30_000L);
+    private static final int RATE = Integer.getInteger("load.rate", 0);
+    private static final int GET_WEIGHT = Integer.getInteger("load.get", 70);
+    private static final int PUT_WEIGHT = Integer.getInteger("load.put", 25);
+    private static final int DELETE_WEIGHT = Integer.getInteger("load.delete", 5);
+    private static final int KEYS = Integer.getInteger("load.keys", 10_000);
+    private static final double ZIPF = Double.parseDouble(System.getProperty("load.zipf", "0.99"));
+    private static final String REPLICAS = System.getProperty("load.replicas", "");
+    private static final int VALUE_SIZE = Integer.getInteger("load.value.size", 256);
+    private static final String MODES = System.getProperty(
+            "load.modes",
+            System.getProperty(KVServiceFactory.EXECUTION_MODE, "pool")
+    );
+    private static final String[] METHODS = {"GET", "PUT", "DELETE"};
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final Recorder[] latencies = new Recorder[METHODS.length];
+    private final AtomicLong errors = new AtomicLong();
+    private final ZipfianGenerator keys = new ZipfianGenerator(KEYS, ZIPF);
+
+    private LoadGenerator() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new Recorder(3);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (final String mode : MODES.split(",")) {
+            System.setProperty(KVServiceFactory.EXECUTION_MODE, mode.trim());
+            logger.info("Mode {}", mode.trim());
+            load();
+        }
+    }
+
+    private static void load() throws Exception {
+        final Set<String> topology = new HashSet<>(NODES);
+        for (int i = 0; i < NODES; i++) {
+            topology.add("http://localhost:" + (FIRST_PORT + i));
+        }
+        final List<File> files = new ArrayList<>(NODES);
+        final List<KVDao> daos = new ArrayList<>(NODES);
+        final List<KVService> services = new ArrayList<>(NODES);
+        final List<HttpClient> clients = new ArrayList<>(NODES);
+        try {
+            for (int i = 0; i < NODES; i++) {
+                final int port = FIRST_PORT + i;
+                final File data = Files.createTempDirectory();
+                files.add(data);
+                final KVDao dao = KVDaoFactory.create(data);
+                daos.add(dao);
+                final KVService service = KVServiceFactory.create(port, dao, topology);
+                service.start();
+                services.add(service);
+                clients.add(new HttpClient(new ConnectionString(
+                        "http://localhost:" + port + "?clientMaxPoolSize=" + CLIENTS
+                )));
+            }
+            new LoadGenerator().run(clients);
+        } finally {
+            for (int i = 0; i < services.size(); i++) {
+                clients.get(i).close();
+                services.get(i).stop();
+            }
+            for (int i = 0; i < daos.size(); i++) {
+                daos.get(i).close();
+                try {
+                    Files.recursiveDelete(files.get(i));
+                } catch (IOException e) {
+                    logger.warn("Can't delete {}", files.get(i), e);
+                }
+            }
+        }
+    }
+
+    private void run(final List<HttpClient> clients) throws InterruptedException {
+        logger.info("Writing {} keys", KEYS);
+        for (int key = 0; key < KEYS; key++) {
+            send(clients.get(key % clients.size()), 1, key);
+        }
+        for (final Recorder recorder : latencies) {
+            recorder.reset();
+        }
+        errors.set(0);
+
+        logger.info(
+                "Load of {} clients for {} ms, {}",
+                CLIENTS,
+                DURATION_MILLIS,
+                RATE == 0 ? "closed loop" : RATE + " requests/s"
+        );
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS);
+        final ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            final HttpClient client = clients.get(i % clients.size());
+            final long firstNanos = RATE == 0 ? 0 : start + TimeUnit.SECONDS.toNanos(i) / RATE;
+            executor.execute(() -> load(client, firstNanos, deadline));
+        }
+        executor.shutdown();
+        executor.awaitTermination(DURATION_MILLIS * 2, TimeUnit.MILLISECONDS);
+        report(System.nanoTime() - start);
+    }
+
+    /**
+     * Sends requests until the deadline, one after another or every {@code CLIENTS} periods of the rate
+     * from {@code firstNanos}.
+     */
+    private void load(final HttpClient client, final long firstNanos, final long deadline) {
+        final long intervalNanos = RATE == 0 ? 0 : TimeUnit.SECONDS.toNanos(CLIENTS) / RATE;
+        long intendedNanos = firstNanos;
+        while (true) {
+            if (RATE != 0) {
+                final long delay = intendedNanos - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+            }
+            final long startNanos = RATE == 0 ? System.nanoTime() : intendedNanos;
+            if (startNanos >= deadline) {
+                return;
+            }
+            final int method = nextMethod();
+            final int status = send(client, method, keys.next());
+            if (status == 0) {
+                errors.incrementAndGet();
+            } else {
+                latencies[method].recordValue(System.nanoTime() - startNanos);
+            }
+            intendedNanos += intervalNanos;
+        }
+    }
+
+    private static int nextMethod() {
+        final int weight = ThreadLocalRandom.current().nextInt(GET_WEIGHT + PUT_WEIGHT + DELETE_WEIGHT);
+        if (weight < GET_WEIGHT) {
+            return 0;
+        }
+        return weight < GET_WEIGHT + PUT_WEIGHT ? 1 : 2;
+    }
+
+    /**
+     * @return status of the response, or {@code 0} if it is unexpected
+     */
+    private static int send(final HttpClient client, final int method, final long key) {
+        final String uri = "/v0/entity?id=key" + key + (REPLICAS.isEmpty() ? "" : "&replicas=" + REPLICAS);
+        try {
+            final Response response;
+            final boolean isExpected;
+            switch (method) {
+                case 0:
+                    response = client.get(uri);
+                    isExpected = response.getStatus() == 200 || response.getStatus() == 404;
+                    break;
+                case 1:
+                    final byte[] value = new byte[VALUE_SIZE];
+                    ThreadLocalRandom.current().nextBytes(value);
+                    response = client.put(uri, value);
+                    isExpected = response.getStatus() == 201;
+                    break;
+                default:
+                    response = client.delete(uri);
+                    isExpected = response.getStatus() == 202;
+            }
+            return isExpected ? response.getStatus() : 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private void report(final long elapsedNanos) {
+        long requests = 0;
+        for (int i = 0; i < METHODS.length; i++) {
+            final Histogram histogram = latencies[i].getIntervalHistogram();
+            requests += histogram.getTotalCount();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            final StringBuilder percentiles = new StringBuilder();
+            for (final double percentile : PERCENTILES) {
+                percentiles.append(" p").append(percentile).append('=')
+                        .append(TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(percentile)));
+            }
+            logger.info(
+                    "{}: {} requests, latency us:{} max={}",
+                    METHODS[i],
+                    histogram.getTotalCount(),
+                    percentiles,
+                    TimeUnit.NANOSECONDS.toMicros(histogram.getMaxValue())
+            );
+        }
+        logger.info(
+                "Total: {} requests/s, {} errors",
+                requests * TimeUnit.SECONDS.toNanos(1) / elapsedNanos,
+                errors.get()
+        );
+    }
+
+    /**
+     * Generator of keys from {@code 0} to {@code n} exclusive, the key {@code i} is chosen with probability
+     * proportional to {@code 1 / (i + 1) ^ theta}, by the algorithm of Gray et al. which is used in YCSB.
+     */
+    static final class ZipfianGenerator {
+        private final long n;
+        private final double theta;
+        private final double zetaN;
+        private final double alpha;
+        private final double eta;
+
+        /**
+         * @param theta exponent from {@code 0} inclusive to {@code 1} exclusive, {@code 0} means uniform
+         */
+        ZipfianGenerator(final long n, final double theta) {
+            if (n <= 0 || theta < 0 || theta >= 1) {
+                throw new IllegalArgumentException("Bad Zipfian distribution: " + n + " " + theta);
+            }
+            this.n = n;
+            this.theta = theta;
+            zetaN = zeta(n, theta);
+            alpha = 1 / (1 - theta);
+            eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        private static double zeta(final long n, final double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+        long next() {
+            final double u = ThreadLocalRandom.current().nextDouble();
+            if (theta == 0) {
+                return (long) (u * n);
+            }
+            final double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return Math.min(1, n - 1);
+            }
+            return Math.min((long) (n * Math.pow(eta * u - eta + 1, alpha)), n - 1);
+        }
+    }
+}
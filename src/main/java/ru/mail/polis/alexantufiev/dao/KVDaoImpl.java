@@ -2,7 +2,7 @@ package ru.mail.polis.alexantufiev.dao;
 
 import jetbrains.exodus.ArrayByteIterable;
 import jetbrains.exodus.ByteIterable;
-import jetbrains.exodus.CompoundByteIterable;
+import jetbrains.exodus.env.Cursor;
 import jetbrains.exodus.env.Environment;
 import jetbrains.exodus.env.EnvironmentConfig;
 import jetbrains.exodus.env.Environments;
@@ -10,33 +10,83 @@ import jetbrains.exodus.env.Store;
 import jetbrains.exodus.env.StoreConfig;
 import jetbrains.exodus.env.Transaction;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import ru.mail.polis.KVDao;
 import ru.mail.polis.alexantufiev.entity.BytesEntity;
+import ru.mail.polis.alexantufiev.entity.Hashing;
+import ru.mail.polis.alexantufiev.entity.Record;
+import ru.mail.polis.alexantufiev.metrics.MetricsRegistry;
+import ru.mail.polis.alexantufiev.metrics.Timer;
 
 import java.io.File;
-import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
-
-import static jetbrains.exodus.bindings.StringBinding.stringToEntry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The implementation of {@link KVDao}.
  *
  * @author Aleksey Antufev
- * @version 1.1.0
+ * @version 1.6.0
  * @since 1.0.0 01.05.2018
  */
 public class KVDaoImpl implements KVDao {
 
     private final Environment environment;
-    private static final String STORAGE_NAME = "MyStorage";
-    private static final String propertyTime = "time";
-    private static final String propertyIsDeleted = "isDeleted";
-    private static final String propertyValue = "value";
+    private static final String STORAGE_NAME = "MyStorage.v1";
+    private static final String LEGACY_STORAGE_NAME = "MyStorage";
+    private static final String HINTS_NAME = "Hints";
+    private static final String HASH_INDEX_NAME = "KeysByHash";
+    private static final byte[] EMPTY = new byte[0];
+    private static final ByteIterable EMPTY_ENTRY = new ArrayByteIterable(EMPTY);
+    /**
+     * Time of a tombstone which is written without version: it is issued from the stored record.
+     */
+    private static final long LOCAL_TIME = Long.MIN_VALUE;
+    /**
+     * Tombstones and hints older than the grace period are dropped. Replicas must be repaired within
+     * this period, otherwise a replica which missed a delete may bring the deleted entity back.
+     */
+    private static final long GRACE_PERIOD_MILLIS = Long.getLong(
+        "kv.tombstones.grace.period.ms",
+        TimeUnit.DAYS.toMillis(1)
+    );
+    /**
+     * Size of {@link OffHeapCache} in bytes, the cache is disabled by default.
+     */
+    private static final long CACHE_SIZE = Long.getLong("kv.cache.size", 0);
+    private static final long COMPACTION_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int COMPACTION_BATCH_SIZE = 1000;
+    /**
+     * Bytes of keys and values, including tombstones, which {@link #range} reads by one transaction.
+     */
+    private static final int RANGE_PAGE_BYTES = 64 * 1024;
+    private static final Logger logger = LoggerFactory.getLogger(KVDaoImpl.class);
 
+    private final ScheduledExecutorService compactor;
+    private final OffHeapCache cache;
+    private final Timer readTransactions = new Timer();
+    private final Timer writeTransactions = new Timer();
     private boolean isAccessible;
+    private volatile RecordListener listener;
 
     public KVDaoImpl(@NotNull File data) {
+        this(data, GRACE_PERIOD_MILLIS);
+    }
+
+    public KVDaoImpl(@NotNull File data, long gracePeriodMillis) {
+        this(data, gracePeriodMillis, CACHE_SIZE);
+    }
+
+    public KVDaoImpl(@NotNull File data, long gracePeriodMillis, long cacheSize) {
         EnvironmentConfig ec = new EnvironmentConfig();
         ec.setMemoryUsagePercentage(95);
         ec.setEnvMonitorTxnsTimeout(0);
@@ -53,7 +103,70 @@ public class KVDaoImpl implements KVDao {
         ec.setLogCacheOpenFilesCount(1000);
 //        ec.setLogSyncPeriod(10000);
         environment = Environments.newInstance(data, ec);
+        migrateLegacyStorage();
+        createHashIndex();
+        cache = new OffHeapCache(cacheSize);
         isAccessible = true;
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tombstone-compactor-" + data.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(
+            () -> compact(gracePeriodMillis),
+            COMPACTION_PERIOD_MILLIS,
+            COMPACTION_PERIOD_MILLIS,
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Creates the storage and rewrites records of {@link #LEGACY_STORAGE_NAME} into the binary layout
+     * of {@link BytesEntity}, the legacy storage is removed afterwards.
+     */
+    private void migrateLegacyStorage() {
+        environment.executeInExclusiveTransaction(txn -> {
+            Store store = getStore(txn);
+            getHintsStore(txn);
+            if (!environment.storeExists(LEGACY_STORAGE_NAME, txn)) {
+                return;
+            }
+            Store legacyStore = environment.openStore(
+                LEGACY_STORAGE_NAME,
+                StoreConfig.WITHOUT_DUPLICATES_WITH_PREFIXING,
+                txn
+            );
+            Cursor cursor = legacyStore.openCursor(txn);
+            try {
+                while (cursor.getNext()) {
+                    store.put(txn, cursor.getKey(), BytesEntity.fromLegacy(cursor.getValue()).toByteIterable());
+                }
+            } finally {
+                cursor.close();
+            }
+            environment.removeStore(LEGACY_STORAGE_NAME, txn);
+        });
+    }
+
+    /**
+     * Indexes keys of the storage by their hashes, if the index does not exist yet.
+     */
+    private void createHashIndex() {
+        environment.executeInExclusiveTransaction(txn -> {
+            if (environment.storeExists(HASH_INDEX_NAME, txn)) {
+                return;
+            }
+            Store index = getHashIndex(txn);
+            Cursor cursor = getStore(txn).openCursor(txn);
+            try {
+                while (cursor.getNext()) {
+                    ByteIterable key = cursor.getKey();
+                    index.put(txn, hashIndexKey(Arrays.copyOf(key.getBytesUnsafe(), key.getLength())), EMPTY_ENTRY);
+                }
+            } finally {
+                cursor.close();
+            }
+        });
     }
 
     private ByteIterable bytesToEntry(@NotNull byte[] bytes) {
@@ -66,21 +179,63 @@ public class KVDaoImpl implements KVDao {
         if (!isAccessible) {
             throw new NoAccessException();
         }
-        BytesEntity entity = getEntity(key);
-        if (entity.isDeleted()) {
+        ByteIterable record = getRecord(key);
+        if (BytesEntity.isDeleted(record)) {
             throw new NoSuchElementException("Entity was deleted");
         }
-        return entity.getBytes();
+        return BytesEntity.getValue(record);
     }
 
     @Override
     public BytesEntity getEntity(@NotNull byte[] key) {
-        ByteIterable[] byteIterable = new ByteIterable[1];
-        environment.executeInTransaction(txn -> byteIterable[0] = getStore(txn).get(txn, bytesToEntry(key)));
-        if (byteIterable[0] == null) {
+        return new BytesEntity(getRecord(key));
+    }
+
+    @NotNull
+    @Override
+    public List<BytesEntity> getEntities(@NotNull List<byte[]> keys) {
+        if (!isAccessible) {
+            throw new NoAccessException();
+        }
+        long start = System.nanoTime();
+        try {
+            return environment.computeInReadonlyTransaction(txn -> {
+                Store store = getStore(txn);
+                List<BytesEntity> entities = new ArrayList<>(keys.size());
+                for (byte[] key : keys) {
+                    ByteIterable record = store.get(txn, bytesToEntry(key));
+                    entities.add(record == null ? null : new BytesEntity(record));
+                }
+                return entities;
+            });
+        } finally {
+            readTransactions.recordSince(start);
+        }
+    }
+
+    /**
+     * A hit of {@link OffHeapCache} is not free of copies: the record is copied once from direct memory,
+     * a miss returns the record of Xodus as is.
+     */
+    @NotNull
+    @Override
+    public ByteIterable getRecord(@NotNull byte[] key) {
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            return new ArrayByteIterable(cached);
+        }
+        long start = System.nanoTime();
+        ByteIterable record;
+        try {
+            record = environment.computeInReadonlyTransaction(txn -> getStore(txn).get(txn, bytesToEntry(key)));
+        } finally {
+            readTransactions.recordSince(start);
+        }
+        if (record == null) {
             throw new NoSuchElementException("Entity was not found");
         }
-        return new BytesEntity(byteIterable[0]);
+        cache.put(key, record);
+        return record;
     }
 
     @Override
@@ -98,22 +253,94 @@ public class KVDaoImpl implements KVDao {
         if (!isAccessible) {
             throw new NoAccessException();
         }
-        environment.executeInTransaction(txn -> {
-            ByteIterable[] byteIterables = new ByteIterable[3];
-            byteIterables[0] = bytesToEntry(value);
-            byteIterables[1] = stringToEntry(LocalDateTime.now().toString());
-            byteIterables[2] = stringToEntry("F");
+        ByteIterable[] written = new ByteIterable[2];
+        long start = System.nanoTime();
+        try {
+            environment.executeInTransaction(txn -> {
+                Store store = getStore(txn);
+                ByteIterable keyEntry = bytesToEntry(key);
+                written[0] = store.get(txn, keyEntry);
+                written[1] = BytesEntity.toByteIterable(value, nextTime(written[0]), false);
+                store.put(txn, keyEntry, written[1]);
+                if (written[0] == null) {
+                    getHashIndex(txn).put(txn, hashIndexKey(key), EMPTY_ENTRY);
+                }
+            });
+        } finally {
+            writeTransactions.recordSince(start);
+        }
+        onWrite(key, written[0], written[1]);
+    }
 
-            getStore(txn).put(txn, bytesToEntry(key), new CompoundByteIterable(byteIterables));
-        });
+    @Override
+    public boolean upsert(@NotNull byte[] key, @NotNull BytesEntity entity) {
+        if (!isAccessible) {
+            throw new NoAccessException();
+        }
+        if (entity.isDeleted()) {
+            return writeTombstone(key, entity.getTime(), entity.getReplicas());
+        }
+        ByteIterable record = entity.toByteIterable();
+        ByteIterable[] replaced = new ByteIterable[1];
+        long start = System.nanoTime();
+        boolean isWritten;
+        try {
+            isWritten = environment.computeInTransaction(txn -> {
+                Store store = getStore(txn);
+                ByteIterable keyEntry = bytesToEntry(key);
+                replaced[0] = store.get(txn, keyEntry);
+                if (replaced[0] != null && BytesEntity.compareVersions(replaced[0], record) >= 0) {
+                    return false;
+                }
+                if (replaced[0] == null) {
+                    getHashIndex(txn).put(txn, hashIndexKey(key), EMPTY_ENTRY);
+                }
+                return store.put(txn, keyEntry, record);
+            });
+        } finally {
+            writeTransactions.recordSince(start);
+        }
+        if (isWritten) {
+            onWrite(key, replaced[0], record);
+        }
+        return isWritten;
     }
 
-    public void upsert(@NotNull BytesEntity entity) {
-        environment.executeInTransaction(txn -> getStore(txn).put(
-            txn,
-            bytesToEntry(entity.getBytes()),
-            entity.toByteIterable()
-        ));
+    @Override
+    public void upsert(@NotNull List<Record> records) {
+        if (!isAccessible) {
+            throw new NoAccessException();
+        }
+        List<ByteIterable> entries = new ArrayList<>(records.size());
+        for (Record record : records) {
+            entries.add(record.getEntity().toByteIterable());
+        }
+        ByteIterable[] replaced = new ByteIterable[records.size()];
+        boolean[] written = new boolean[records.size()];
+        long start = System.nanoTime();
+        try {
+            environment.executeInTransaction(txn -> {
+                Store store = getStore(txn);
+                Store index = getHashIndex(txn);
+                for (int i = 0; i < records.size(); i++) {
+                    byte[] key = records.get(i).getKey();
+                    ByteIterable keyEntry = bytesToEntry(key);
+                    replaced[i] = store.get(txn, keyEntry);
+                    written[i] = (replaced[i] == null || BytesEntity.compareVersions(replaced[i], entries.get(i)) < 0)
+                        && store.put(txn, keyEntry, entries.get(i));
+                    if (written[i] && replaced[i] == null) {
+                        index.put(txn, hashIndexKey(key), EMPTY_ENTRY);
+                    }
+                }
+            });
+        } finally {
+            writeTransactions.recordSince(start);
+        }
+        for (int i = 0; i < records.size(); i++) {
+            if (written[i]) {
+                onWrite(records.get(i).getKey(), replaced[i], entries.get(i));
+            }
+        }
     }
 
     @Override
@@ -121,9 +348,313 @@ public class KVDaoImpl implements KVDao {
         if (!isAccessible) {
             throw new NoAccessException();
         }
-        BytesEntity entity = getEntity(key);
-        entity.setDeleted(true);
-        environment.executeInTransaction(txn -> getStore(txn).put(txn, bytesToEntry(key), entity.toByteIterable()));
+        writeTombstone(key, LOCAL_TIME, 0);
+    }
+
+    /**
+     * Writes a tombstone without value in one exclusive transaction, the tombstone is written even if there is
+     * no record of the key, so a delete which comes before the write is not lost.
+     *
+     * @param time     version of the delete or {@link #LOCAL_TIME}
+     * @param replicas count of replicas
+     * @return {@code true} if the tombstone was written
+     */
+    private boolean writeTombstone(byte[] key, long time, int replicas) {
+        ByteIterable[] written = new ByteIterable[2];
+        long start = System.nanoTime();
+        boolean isWritten;
+        try {
+            isWritten = environment.computeInExclusiveTransaction(txn -> {
+                Store store = getStore(txn);
+                ByteIterable keyEntry = bytesToEntry(key);
+                written[0] = store.get(txn, keyEntry);
+                long tombstoneTime = time == LOCAL_TIME ? nextTime(written[0]) : time;
+                written[1] = BytesEntity.toByteIterable(EMPTY, tombstoneTime, true, replicas);
+                if (written[0] != null && BytesEntity.compareVersions(written[0], written[1]) >= 0) {
+                    return false;
+                }
+                if (written[0] == null) {
+                    getHashIndex(txn).put(txn, hashIndexKey(key), EMPTY_ENTRY);
+                }
+                return store.put(txn, keyEntry, written[1]);
+            });
+        } finally {
+            writeTransactions.recordSince(start);
+        }
+        if (isWritten) {
+            onWrite(key, written[0], written[1]);
+        }
+        return isWritten;
+    }
+
+    @NotNull
+    @Override
+    public RecordIterator range(@NotNull byte[] start, @Nullable byte[] end) {
+        if (!isAccessible) {
+            throw new NoAccessException();
+        }
+        return new PagedIterator(bytesToEntry(start), end == null ? null : bytesToEntry(end));
+    }
+
+    @NotNull
+    @Override
+    public RecordIterator hashRange(long start, long end, @Nullable byte[] after) {
+        if (!isAccessible) {
+            throw new NoAccessException();
+        }
+        Transaction txn = environment.beginReadonlyTransaction();
+        try {
+            return new HashIndexIterator(
+                txn,
+                getStore(txn),
+                getHashIndex(txn).openCursor(txn),
+                after == null ? bytesToEntry(longToBytes(start)) : hashIndexKey(after),
+                after != null,
+                end == 0 ? null : bytesToEntry(longToBytes(end))
+            );
+        } catch (RuntimeException e) {
+            txn.abort();
+            throw e;
+        }
+    }
+
+    @Override
+    public void scan(@NotNull RecordListener visitor) {
+        environment.executeInReadonlyTransaction(txn -> {
+            Cursor cursor = getStore(txn).openCursor(txn);
+            try {
+                while (cursor.getNext()) {
+                    ByteIterable key = cursor.getKey();
+                    visitor.onRecord(Arrays.copyOf(key.getBytesUnsafe(), key.getLength()), null, cursor.getValue());
+                }
+            } finally {
+                cursor.close();
+            }
+        });
+    }
+
+    @Override
+    public void setListener(@Nullable RecordListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Time of transactions of reads and writes of entities, reads from the cache are not counted.
+     */
+    @Override
+    public void registerMetrics(@NotNull MetricsRegistry registry) {
+        String name = "kv_dao_transaction_seconds";
+        String help = "Time of Xodus transactions of entities.";
+        registry.timer(name, help, readTransactions, "type", "read");
+        registry.timer(name, help, writeTransactions, "type", "write");
+    }
+
+    /**
+     * Updates the cache and calls the listener after the commit, transactions may be executed several times.
+     */
+    private void onWrite(byte[] key, ByteIterable old, ByteIterable record) {
+        if (record == null) {
+            cache.remove(key);
+        } else {
+            cache.put(key, record);
+        }
+        RecordListener current = listener;
+        if (current != null) {
+            current.onRecord(key, old, record);
+        }
+    }
+
+    private void compact(long gracePeriodMillis) {
+        if (!isAccessible) {
+            return;
+        }
+        long before = BytesEntity.currentTime() - (gracePeriodMillis << BytesEntity.LOGICAL_BITS);
+        try {
+            int tombstones = purgeTombstones(before);
+            int hints = purgeHints(before);
+            logger.debug("*** COMPACTION *** TOMBSTONES='{}' HINTS='{}'", tombstones, hints);
+        } catch (RuntimeException e) {
+            logger.error("catch exception in compaction", e);
+        }
+    }
+
+    /**
+     * Drops tombstones with versions before {@code before}. Tombstones are collected in batches by readonly
+     * transactions and removed by short exclusive ones, which check that the tombstone was not replaced.
+     *
+     * @param before version of the oldest kept tombstone
+     * @return count of dropped tombstones
+     */
+    public int purgeTombstones(long before) {
+        int purged = 0;
+        byte[] from = EMPTY;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<byte[]> keys = findTombstones(from, before);
+            if (keys.isEmpty()) {
+                break;
+            }
+            purged += removeTombstones(keys, before);
+            if (keys.size() < COMPACTION_BATCH_SIZE) {
+                break;
+            }
+            byte[] last = keys.get(keys.size() - 1);
+            from = Arrays.copyOf(last, last.length + 1);
+        }
+        return purged;
+    }
+
+    private List<byte[]> findTombstones(byte[] from, long before) {
+        return environment.computeInReadonlyTransaction(txn -> {
+            List<byte[]> keys = new ArrayList<>();
+            Cursor cursor = getStore(txn).openCursor(txn);
+            try {
+                boolean hasRecord = cursor.getSearchKeyRange(bytesToEntry(from)) != null;
+                while (hasRecord && keys.size() < COMPACTION_BATCH_SIZE) {
+                    if (isExpiredTombstone(cursor.getValue(), before)) {
+                        ByteIterable key = cursor.getKey();
+                        keys.add(Arrays.copyOf(key.getBytesUnsafe(), key.getLength()));
+                    }
+                    hasRecord = cursor.getNext();
+                }
+            } finally {
+                cursor.close();
+            }
+            return keys;
+        });
+    }
+
+    private int removeTombstones(List<byte[]> keys, long before) {
+        ByteIterable[] removed = new ByteIterable[keys.size()];
+        environment.executeInExclusiveTransaction(txn -> {
+            Store store = getStore(txn);
+            Store index = getHashIndex(txn);
+            for (int i = 0; i < keys.size(); i++) {
+                ByteIterable keyEntry = bytesToEntry(keys.get(i));
+                ByteIterable stored = store.get(txn, keyEntry);
+                removed[i] = isExpiredTombstone(stored, before) && store.delete(txn, keyEntry) ? stored : null;
+                if (removed[i] != null) {
+                    index.delete(txn, hashIndexKey(keys.get(i)));
+                }
+            }
+        });
+        int count = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            if (removed[i] != null) {
+                onWrite(keys.get(i), removed[i], null);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isExpiredTombstone(ByteIterable record, long before) {
+        return record != null && BytesEntity.isDeleted(record) && BytesEntity.getTime(record) < before;
+    }
+
+    /**
+     * Drops hints with versions before {@code before}: the write may be delivered after a tombstone
+     * of the key was dropped, and would bring the deleted entity back.
+     *
+     * @param before version of the oldest kept hint
+     * @return count of dropped hints
+     */
+    public int purgeHints(long before) {
+        return environment.computeInExclusiveTransaction(txn -> {
+            int purged = 0;
+            Cursor cursor = getHintsStore(txn).openCursor(txn);
+            try {
+                while (cursor.getNext()) {
+                    if (BytesEntity.getTime(cursor.getValue()) < before && cursor.deleteCurrent()) {
+                        purged++;
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            return purged;
+        });
+    }
+
+    /**
+     * Time of a local write without version: now, but always after the stored record.
+     */
+    private static long nextTime(ByteIterable stored) {
+        long now = BytesEntity.currentTime();
+        return stored == null ? now : Math.max(now, BytesEntity.getTime(stored) + 1);
+    }
+
+    @Override
+    public void addHint(@NotNull String node, @NotNull byte[] key, @NotNull BytesEntity entity) {
+        ByteIterable hintKey = bytesToEntry(hintKey(node, key));
+        ByteIterable record = entity.toByteIterable();
+        environment.executeInTransaction(txn -> {
+            Store store = getHintsStore(txn);
+            ByteIterable stored = store.get(txn, hintKey);
+            if (stored == null || BytesEntity.compareVersions(stored, record) < 0) {
+                store.put(txn, hintKey, record);
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public List<Record> getHints(@NotNull String node, int limit) {
+        byte[] prefix = hintKey(node, new byte[0]);
+        return environment.computeInReadonlyTransaction(txn -> {
+            List<Record> hints = new ArrayList<>();
+            Cursor cursor = getHintsStore(txn).openCursor(txn);
+            try {
+                if (cursor.getSearchKeyRange(bytesToEntry(prefix)) == null) {
+                    return hints;
+                }
+                do {
+                    ByteIterable hintKey = cursor.getKey();
+                    if (!startsWith(hintKey, prefix)) {
+                        break;
+                    }
+                    byte[] key = Arrays.copyOfRange(hintKey.getBytesUnsafe(), prefix.length, hintKey.getLength());
+                    hints.add(new Record(key, new BytesEntity(cursor.getValue())));
+                } while (hints.size() < limit && cursor.getNext());
+            } finally {
+                cursor.close();
+            }
+            return hints;
+        });
+    }
+
+    @Override
+    public void removeHints(@NotNull String node, @NotNull List<Record> hints) {
+        environment.executeInTransaction(txn -> {
+            Store store = getHintsStore(txn);
+            for (Record hint : hints) {
+                ByteIterable hintKey = bytesToEntry(hintKey(node, hint.getKey()));
+                ByteIterable stored = store.get(txn, hintKey);
+                if (stored != null && BytesEntity.compareVersions(stored, hint.getEntity().toByteIterable()) == 0) {
+                    store.delete(txn, hintKey);
+                }
+            }
+        });
+    }
+
+    private static byte[] hintKey(String node, byte[] key) {
+        byte[] prefix = node.getBytes(StandardCharsets.UTF_8);
+        byte[] hintKey = new byte[prefix.length + 1 + key.length];
+        System.arraycopy(prefix, 0, hintKey, 0, prefix.length);
+        System.arraycopy(key, 0, hintKey, prefix.length + 1, key.length);
+        return hintKey;
+    }
+
+    private static boolean startsWith(ByteIterable iterable, byte[] prefix) {
+        if (iterable.getLength() < prefix.length) {
+            return false;
+        }
+        byte[] bytes = iterable.getBytesUnsafe();
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @NotNull
@@ -131,8 +662,193 @@ public class KVDaoImpl implements KVDao {
         return environment.openStore(STORAGE_NAME, StoreConfig.WITHOUT_DUPLICATES_WITH_PREFIXING, txn);
     }
 
+    /**
+     * Index of keys of the storage by their hashes: key is 8 bytes big-endian {@link Hashing#hash} of the key
+     * and the key, value is empty. It is updated in the transactions which create and drop records.
+     */
+    @NotNull
+    private Store getHashIndex(Transaction txn) {
+        return environment.openStore(HASH_INDEX_NAME, StoreConfig.WITHOUT_DUPLICATES_WITH_PREFIXING, txn);
+    }
+
+    private static ByteIterable hashIndexKey(byte[] key) {
+        byte[] indexKey = Arrays.copyOf(longToBytes(Hashing.hash(key, 0, key.length)), Long.BYTES + key.length);
+        System.arraycopy(key, 0, indexKey, Long.BYTES, key.length);
+        return new ArrayByteIterable(indexKey);
+    }
+
+    private static byte[] longToBytes(long value) {
+        byte[] bytes = new byte[Long.BYTES];
+        for (int i = 0; i < Long.BYTES; i++) {
+            bytes[i] = (byte) (value >>> (Long.SIZE - Byte.SIZE * (i + 1)));
+        }
+        return bytes;
+    }
+
+    /**
+     * Store of hinted handoff: key is the name of the node, zero byte and the key of the entity.
+     */
+    @NotNull
+    private Store getHintsStore(Transaction txn) {
+        return environment.openStore(HINTS_NAME, StoreConfig.WITHOUT_DUPLICATES_WITH_PREFIXING, txn);
+    }
+
     @Override
     public void close() {
+        compactor.shutdownNow();
+        try {
+            compactor.awaitTermination(COMPACTION_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         environment.close();
     }
+
+    /**
+     * Iterator over live records which reads them by pages of {@link #RANGE_PAGE_BYTES} in readonly transactions.
+     * A page opens the cursor after the last key of the previous one, so a slow reader of a long range does not hold
+     * a transaction, which keeps the old files of the log from the garbage collector.
+     */
+    private final class PagedIterator implements RecordIterator {
+
+        private final ArrayDeque<Record> page = new ArrayDeque<>();
+        private final ByteIterable end;
+        private ByteIterable from;
+        private boolean isAfterFrom;
+        private boolean isOver;
+
+        private PagedIterator(ByteIterable start, ByteIterable end) {
+            this.end = end;
+            from = start;
+        }
+
+        private void fetch() {
+            environment.executeInReadonlyTransaction(txn -> {
+                Cursor cursor = getStore(txn).openCursor(txn);
+                try {
+                    boolean hasRecord = cursor.getSearchKeyRange(from) != null;
+                    if (hasRecord && isAfterFrom && cursor.getKey().compareTo(from) == 0) {
+                        hasRecord = cursor.getNext();
+                    }
+                    int size = 0;
+                    while (hasRecord && size < RANGE_PAGE_BYTES) {
+                        ByteIterable key = cursor.getKey();
+                        if (end != null && key.compareTo(end) >= 0) {
+                            hasRecord = false;
+                            break;
+                        }
+                        ByteIterable value = cursor.getValue();
+                        byte[] keyBytes = Arrays.copyOf(key.getBytesUnsafe(), key.getLength());
+                        if (!BytesEntity.isDeleted(value)) {
+                            page.add(new Record(keyBytes, new BytesEntity(value)));
+                        }
+                        from = bytesToEntry(keyBytes);
+                        size += keyBytes.length + value.getLength();
+                        hasRecord = cursor.getNext();
+                    }
+                    isOver = !hasRecord;
+                } finally {
+                    cursor.close();
+                }
+            });
+            isAfterFrom = true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (page.isEmpty() && !isOver) {
+                fetch();
+            }
+            return !page.isEmpty();
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Range is over");
+            }
+            return page.poll();
+        }
+
+        @Override
+        public void close() {
+            isOver = true;
+            page.clear();
+        }
+    }
+
+    /**
+     * Iterator over records of {@link #getHashIndex}, including tombstones, of a readonly transaction,
+     * the transaction is aborted when the range is over.
+     */
+    private static final class HashIndexIterator implements RecordIterator {
+
+        private final Transaction txn;
+        private final Store store;
+        private final Cursor cursor;
+        private final ByteIterable end;
+        private Record next;
+        private boolean isClosed;
+
+        private HashIndexIterator(
+            Transaction txn,
+            Store store,
+            Cursor cursor,
+            ByteIterable start,
+            boolean isAfterStart,
+            ByteIterable end
+        ) {
+            this.txn = txn;
+            this.store = store;
+            this.cursor = cursor;
+            this.end = end;
+            boolean hasRecord = cursor.getSearchKeyRange(start) != null;
+            if (hasRecord && isAfterStart && cursor.getKey().compareTo(start) == 0) {
+                hasRecord = cursor.getNext();
+            }
+            fetch(hasRecord);
+        }
+
+        private void fetch(boolean hasRecord) {
+            next = null;
+            while (hasRecord) {
+                ByteIterable indexKey = cursor.getKey();
+                if (end != null && indexKey.subIterable(0, Long.BYTES).compareTo(end) >= 0) {
+                    break;
+                }
+                byte[] key = Arrays.copyOfRange(indexKey.getBytesUnsafe(), Long.BYTES, indexKey.getLength());
+                ByteIterable value = store.get(txn, new ArrayByteIterable(key));
+                if (value != null) {
+                    next = new Record(key, new BytesEntity(value));
+                    return;
+                }
+                hasRecord = cursor.getNext();
+            }
+            close();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Record next() {
+            if (next == null) {
+                throw new NoSuchElementException("Range is over");
+            }
+            Record record = next;
+            fetch(cursor.getNext());
+            return record;
+        }
+
+        @Override
+        public void close() {
+            if (!isClosed) {
+                isClosed = true;
+                cursor.close();
+                txn.abort();
+            }
+        }
+    }
 }
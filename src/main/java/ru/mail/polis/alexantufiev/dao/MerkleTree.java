@@ -0,0 +1,98 @@
+package ru.mail.polis.alexantufiev.dao;
+
+import jetbrains.exodus.ByteIterable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.mail.polis.alexantufiev.entity.Hashing;
+
+/**
+ * Bucketed hash tree of records.
+ * <p>
+ * A key belongs to one of {@code 2^depth} leaf buckets by its hash. The hash of a leaf is XOR of digests of its
+ * records, the digest covers the key and the whole record, so replicas with different values of the same version
+ * differ too, and the hash of an inner node is XOR of its children. So a write updates the tree in {@code O(depth)}
+ * without reading other records, and concurrent updates may be applied in any order.
+ * <p>
+ * Nodes of the level {@code L} have indexes from {@code 0} to {@code 2^L - 1}, the root is the only node of level 0.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public class MerkleTree {
+
+    private final int depth;
+    private final long[] hashes;
+
+    public MerkleTree(int depth) {
+        if (depth < 0 || depth > 20) {
+            throw new IllegalArgumentException("Depth must be from 0 to 20");
+        }
+        this.depth = depth;
+        hashes = new long[2 << depth];
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getBucket(@NotNull byte[] key) {
+        return (int) (Hashing.hash(key, 0, key.length) >>> (Long.SIZE - depth)) & ((1 << depth) - 1);
+    }
+
+    /**
+     * @return the least hash of keys of the bucket, buckets are ranges of hashes as unsigned numbers
+     */
+    public long getFirstHash(int bucket) {
+        return depth == 0 ? 0 : (long) bucket << (Long.SIZE - depth);
+    }
+
+    /**
+     * @return the hash after the greatest hash of keys of the bucket, {@code 0} for the last bucket
+     */
+    public long getEndHash(int bucket) {
+        return bucket + 1 == 1 << depth ? 0 : getFirstHash(bucket + 1);
+    }
+
+    /**
+     * Replaces the {@code old} record of the key with the new one.
+     *
+     * @param key    key
+     * @param old    replaced record or {@code null}
+     * @param record new record or {@code null}
+     */
+    public void update(@NotNull byte[] key, @Nullable ByteIterable old, @Nullable ByteIterable record) {
+        long delta = digest(key, old) ^ digest(key, record);
+        if (delta == 0) {
+            return;
+        }
+        synchronized (hashes) {
+            for (int index = (1 << depth) + getBucket(key); index > 0; index >>>= 1) {
+                hashes[index] ^= delta;
+            }
+        }
+    }
+
+    /**
+     * @param level level of the node
+     * @param index index of the node in the level
+     * @return hash of the node
+     * @throws IndexOutOfBoundsException if there is no such node
+     */
+    public long getHash(int level, int index) {
+        if (level < 0 || level > depth || index < 0 || index >= 1 << level) {
+            throw new IndexOutOfBoundsException("No node " + index + " at level " + level);
+        }
+        synchronized (hashes) {
+            return hashes[(1 << level) + index];
+        }
+    }
+
+    private static long digest(byte[] key, @Nullable ByteIterable record) {
+        if (record == null) {
+            return 0;
+        }
+        long hash = Hashing.hash(key, 0, key.length);
+        return Hashing.mix(hash ^ Hashing.hash(record.getBytesUnsafe(), 0, record.getLength()));
+    }
+}
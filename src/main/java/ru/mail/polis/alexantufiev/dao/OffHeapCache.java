@@ -0,0 +1,351 @@
+package ru.mail.polis.alexantufiev.dao;
+
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.mail.polis.alexantufiev.entity.BytesEntity;
+import ru.mail.polis.alexantufiev.entity.Hashing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * LRU cache of records in the binary layout of {@link BytesEntity} which keeps the records out of the heap.
+ * <p>
+ * The cache is split into segments by hash of the key, every segment has its own lock and three direct buffers:
+ * <ul>
+ * <li>blocks of {@link #BLOCK_SIZE} bytes, an entry takes a chain of blocks with the length of the key, the key
+ * and the record;</li>
+ * <li>metadata of every block: the link to the next block of a chain or of the list of free blocks and, for the
+ * first block of a chain, hash of the key, length and time of the record and links of the list in the order of
+ * access;</li>
+ * <li>an index of keys with open addressing which maps hash of a key to the first block of its chain.</li>
+ * </ul>
+ * So the heap use of the cache does not depend on the count of records, and the metadata and the index are counted
+ * against the capacity. A record is replaced only with a newer one in the order of
+ * {@link BytesEntity#compareVersions}, so a reader which puts a record read before a concurrent write does not hide
+ * the write.
+ * <p>
+ * Direct memory is limited by {@code -XX:MaxDirectMemorySize}, which is equal to {@code -Xmx} by default.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public class OffHeapCache {
+
+    private static final int BLOCK_SIZE = 128;
+    private static final int SEGMENTS = 16;
+    /**
+     * A record can take not more than this part of a segment.
+     */
+    private static final int MAX_RECORD_PART = 8;
+    private static final int NONE = -1;
+
+    private static final int NEXT = 0;
+    private static final int HASH = 4;
+    private static final int LENGTH = 8;
+    private static final int OLDER = 12;
+    private static final int NEWER = 16;
+    private static final int TIME = 20;
+    private static final int META_SIZE = 28;
+    /**
+     * Bytes taken by a block with its metadata and at most four slots of the index, which has not less than two
+     * slots per block and a size of a power of two.
+     */
+    private static final int BLOCK_COST = BLOCK_SIZE + META_SIZE + 4 * Integer.BYTES;
+
+    private final Segment[] segments;
+
+    /**
+     * @param capacity size of the cache in bytes, the cache is disabled if it is too small
+     */
+    public OffHeapCache(long capacity) {
+        int blocks = (int) Math.min(capacity / SEGMENTS / BLOCK_COST, Integer.MAX_VALUE / BLOCK_COST);
+        if (blocks < MAX_RECORD_PART) {
+            segments = new Segment[0];
+            return;
+        }
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(blocks);
+        }
+    }
+
+    public boolean isEnabled() {
+        return segments.length > 0;
+    }
+
+    /**
+     * Copies the record out of direct memory into a new array. It is the only copy of a hit, since responses and
+     * RPC frames are written from heap arrays by one-nio, and the value is then written as a slice of this array.
+     *
+     * @return copy of the cached record or {@code null}
+     */
+    @Nullable
+    public byte[] get(@NotNull byte[] key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        long hash = Hashing.hash(key, 0, key.length);
+        return getSegment(hash).get(key, (int) hash);
+    }
+
+    /**
+     * Caches the record unless a newer one is cached.
+     */
+    public void put(@NotNull byte[] key, @NotNull ByteIterable record) {
+        if (!isEnabled()) {
+            return;
+        }
+        long hash = Hashing.hash(key, 0, key.length);
+        getSegment(hash).put(key, (int) hash, record);
+    }
+
+    public void remove(@NotNull byte[] key) {
+        if (!isEnabled()) {
+            return;
+        }
+        long hash = Hashing.hash(key, 0, key.length);
+        getSegment(hash).remove(key, (int) hash);
+    }
+
+    private Segment getSegment(long hash) {
+        return segments[(int) (hash >>> 32) & (SEGMENTS - 1)];
+    }
+
+    private static final class Segment {
+
+        private final ByteBuffer memory;
+        private final ByteBuffer meta;
+        private final ByteBuffer index;
+        private final int countOfBlocks;
+        private final int mask;
+        private int free;
+        private int countOfFree;
+        private int oldest = NONE;
+        private int newest = NONE;
+        private int writeBlock;
+        private int writePosition;
+
+        private Segment(int blocks) {
+            int slots = Integer.highestOneBit(2 * blocks - 1) << 1;
+            memory = ByteBuffer.allocateDirect(blocks * BLOCK_SIZE);
+            meta = ByteBuffer.allocateDirect(blocks * META_SIZE);
+            index = ByteBuffer.allocateDirect(slots * Integer.BYTES);
+            countOfBlocks = blocks;
+            mask = slots - 1;
+            for (int i = 0; i < blocks; i++) {
+                setMeta(i, NEXT, i + 1 < blocks ? i + 1 : NONE);
+            }
+            countOfFree = blocks;
+        }
+
+        synchronized byte[] get(byte[] key, int hash) {
+            int first = find(key, hash);
+            if (first == NONE) {
+                return null;
+            }
+            unlink(first);
+            linkNewest(first);
+            return read(first, Integer.BYTES + key.length, getMeta(first, LENGTH));
+        }
+
+        synchronized void put(byte[] key, int hash, ByteIterable record) {
+            long time = BytesEntity.getTime(record);
+            int old = find(key, hash);
+            if (old != NONE) {
+                if (!isNewer(record, time, old, key.length)) {
+                    return;
+                }
+                delete(old);
+            }
+            int length = record.getLength();
+            int blocks = (Integer.BYTES + key.length + length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            if (blocks > countOfBlocks / MAX_RECORD_PART) {
+                return;
+            }
+            while (countOfFree < blocks) {
+                delete(oldest);
+            }
+            int first = free;
+            int last = first;
+            for (int i = 1; i < blocks; i++) {
+                last = getMeta(last, NEXT);
+            }
+            free = getMeta(last, NEXT);
+            setMeta(last, NEXT, NONE);
+            countOfFree -= blocks;
+
+            memory.putInt(first * BLOCK_SIZE, key.length);
+            writeBlock = first;
+            writePosition = Integer.BYTES;
+            append(key, key.length);
+            append(record.getBytesUnsafe(), length);
+            setMeta(first, HASH, hash);
+            setMeta(first, LENGTH, length);
+            meta.putLong(first * META_SIZE + TIME, time);
+            linkNewest(first);
+            int slot = hash & mask;
+            while (index.getInt(slot * Integer.BYTES) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index.putInt(slot * Integer.BYTES, first + 1);
+        }
+
+        synchronized void remove(byte[] key, int hash) {
+            int first = find(key, hash);
+            if (first != NONE) {
+                delete(first);
+            }
+        }
+
+        private boolean isNewer(ByteIterable record, long time, int old, int keyLength) {
+            long oldTime = meta.getLong(old * META_SIZE + TIME);
+            if (time != oldTime) {
+                return time > oldTime;
+            }
+            byte[] oldRecord = read(old, Integer.BYTES + keyLength, getMeta(old, LENGTH));
+            return BytesEntity.compareVersions(record, new ArrayByteIterable(oldRecord)) > 0;
+        }
+
+        /**
+         * @return first block of the chain of the key or {@link #NONE}
+         */
+        private int find(byte[] key, int hash) {
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int first = index.getInt(slot * Integer.BYTES) - 1;
+                if (first == NONE) {
+                    return NONE;
+                }
+                if (getMeta(first, HASH) == hash && isKey(first, key)) {
+                    return first;
+                }
+            }
+        }
+
+        private boolean isKey(int first, byte[] key) {
+            if (memory.getInt(first * BLOCK_SIZE) != key.length) {
+                return false;
+            }
+            int block = first;
+            int position = Integer.BYTES;
+            for (byte b : key) {
+                if (position == BLOCK_SIZE) {
+                    block = getMeta(block, NEXT);
+                    position = 0;
+                }
+                if (memory.get(block * BLOCK_SIZE + position++) != b) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private byte[] read(int first, int offset, int length) {
+            byte[] bytes = new byte[length];
+            int block = first;
+            int position = offset;
+            for (; position >= BLOCK_SIZE; position -= BLOCK_SIZE) {
+                block = getMeta(block, NEXT);
+            }
+            for (int done = 0; done < length; ) {
+                if (position == BLOCK_SIZE) {
+                    block = getMeta(block, NEXT);
+                    position = 0;
+                }
+                int count = Math.min(BLOCK_SIZE - position, length - done);
+                memory.position(block * BLOCK_SIZE + position);
+                memory.get(bytes, done, count);
+                position += count;
+                done += count;
+            }
+            return bytes;
+        }
+
+        private void append(byte[] bytes, int length) {
+            for (int offset = 0; offset < length; ) {
+                if (writePosition == BLOCK_SIZE) {
+                    writeBlock = getMeta(writeBlock, NEXT);
+                    writePosition = 0;
+                }
+                int count = Math.min(BLOCK_SIZE - writePosition, length - offset);
+                memory.position(writeBlock * BLOCK_SIZE + writePosition);
+                memory.put(bytes, offset, count);
+                writePosition += count;
+                offset += count;
+            }
+        }
+
+        private void delete(int first) {
+            removeFromIndex(first);
+            unlink(first);
+            int last = first;
+            int count = 1;
+            for (int block = getMeta(first, NEXT); block != NONE; block = getMeta(block, NEXT)) {
+                last = block;
+                count++;
+            }
+            setMeta(last, NEXT, free);
+            free = first;
+            countOfFree += count;
+        }
+
+        /**
+         * Removes the slot of the chain and shifts back the following slots of the run, so lookups do not need
+         * deleted marks.
+         */
+        private void removeFromIndex(int first) {
+            int hole = getMeta(first, HASH) & mask;
+            while (index.getInt(hole * Integer.BYTES) != first + 1) {
+                hole = (hole + 1) & mask;
+            }
+            for (int slot = (hole + 1) & mask; ; slot = (slot + 1) & mask) {
+                int value = index.getInt(slot * Integer.BYTES);
+                if (value == 0) {
+                    break;
+                }
+                int home = getMeta(value - 1, HASH) & mask;
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    index.putInt(hole * Integer.BYTES, value);
+                    hole = slot;
+                }
+            }
+            index.putInt(hole * Integer.BYTES, 0);
+        }
+
+        private void linkNewest(int first) {
+            setMeta(first, OLDER, newest);
+            setMeta(first, NEWER, NONE);
+            if (newest == NONE) {
+                oldest = first;
+            } else {
+                setMeta(newest, NEWER, first);
+            }
+            newest = first;
+        }
+
+        private void unlink(int first) {
+            int older = getMeta(first, OLDER);
+            int newer = getMeta(first, NEWER);
+            if (older == NONE) {
+                oldest = newer;
+            } else {
+                setMeta(older, NEWER, newer);
+            }
+            if (newer == NONE) {
+                newest = older;
+            } else {
+                setMeta(newer, OLDER, older);
+            }
+        }
+
+        private int getMeta(int block, int field) {
+            return meta.getInt(block * META_SIZE + field);
+        }
+
+        private void setMeta(int block, int field, int value) {
+            meta.putInt(block * META_SIZE + field, value);
+        }
+    }
+}
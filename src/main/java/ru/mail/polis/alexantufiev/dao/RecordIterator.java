@@ -0,0 +1,19 @@
+package ru.mail.polis.alexantufiev.dao;
+
+import ru.mail.polis.alexantufiev.entity.Record;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Iterator over records of the storage which may hold a transaction until it is exhausted or closed.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public interface RecordIterator extends Iterator<Record>, Closeable {
+
+    @Override
+    void close();
+}
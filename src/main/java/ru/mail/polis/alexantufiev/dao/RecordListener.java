@@ -0,0 +1,24 @@
+package ru.mail.polis.alexantufiev.dao;
+
+import jetbrains.exodus.ByteIterable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Receives records of the storage, records are in the binary layout of
+ * {@link ru.mail.polis.alexantufiev.entity.BytesEntity}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+@FunctionalInterface
+public interface RecordListener {
+
+    /**
+     * @param key    key
+     * @param old    replaced record or {@code null} if there was no record
+     * @param record new record or {@code null} if the record was removed
+     */
+    void onRecord(@NotNull byte[] key, @Nullable ByteIterable old, @Nullable ByteIterable record);
+}
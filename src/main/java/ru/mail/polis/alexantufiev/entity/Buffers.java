@@ -0,0 +1,30 @@
+package ru.mail.polis.alexantufiev.entity;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads of byte arrays with 4 bytes big-endian length prefix. Lengths come from requests, so an array is allocated
+ * only if the buffer has enough bytes for it.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+final class Buffers {
+
+    private Buffers() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the length is negative or greater than the count of remaining bytes
+     */
+    static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Malformed length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
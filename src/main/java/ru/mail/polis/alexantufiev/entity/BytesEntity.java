@@ -2,45 +2,233 @@ package ru.mail.polis.alexantufiev.entity;
 
 import jetbrains.exodus.ArrayByteIterable;
 import jetbrains.exodus.ByteIterable;
-import jetbrains.exodus.CompoundByteIterable;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-
-import static jetbrains.exodus.bindings.StringBinding.stringToEntry;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 
 /**
- * TODO: add doc
+ * Value of the storage with its metadata.
+ * <p>
+ * The binary layout of a record is:
+ * <ul>
+ * <li>1 byte header: format version in the high 4 bits and deleted flag in the lowest bit</li>
+ * <li>1 byte unsigned count of replicas</li>
+ * <li>8 bytes timestamp: 48 bits of milliseconds since epoch and 16 bits of a logical counter</li>
+ * <li>value bytes</li>
+ * </ul>
+ * Static accessors read the fields of a stored record without decoding the whole record.
+ * <p>
+ * Versions of a key are totally ordered by {@link #compareVersions}: the later time wins, at the same time
+ * a tombstone wins over a value, and of two values the greater one by unsigned comparison of bytes wins. Clocks of
+ * different nodes may issue the same time, so every replica and every coordinator must choose by this order
+ * to keep the same version whatever order the writes come in.
+ * <p>
+ * Count of replicas is the {@code from} of the write, it is {@code 0} if the write is replicated to all nodes
+ * of the topology or the count is unknown, so a topology of any size is stored. A count greater than
+ * {@link #MAX_REPLICAS} is rejected with {@link IllegalArgumentException} instead of being stored wrong.
  *
  * @author Aleksey Antufev
- * @version 1.1.0
+ * @version 1.6.0
  * @since 1.1.0 10.11.2018
  */
 public class BytesEntity {
 
+    public static final int HEADER_LENGTH = 10;
+    private static final int FORMAT_VERSION = 1;
+    private static final int DELETED_FLAG = 0x01;
+    private static final int TIME_OFFSET = 2;
+    public static final int MAX_REPLICAS = 0xff;
+    public static final int LOGICAL_BITS = 16;
+    private static final int LEGACY_TAIL_LENGTH = 3;
+    private static final int[] LEGACY_TIME_LENGTHS = {23, 26, 29, 19, 16};
+
     private final byte[] bytes;
-    private final LocalDateTime time;
-    private Boolean isDeleted;
+    private final long time;
+    private boolean isDeleted;
+    private final int replicas;
 
     public BytesEntity(byte[] bytes) {
+        this(bytes, currentTime(), false);
+    }
+
+    public BytesEntity(byte[] bytes, long time, boolean isDeleted) {
+        this(bytes, time, isDeleted, 0);
+    }
+
+    public BytesEntity(byte[] bytes, long time, boolean isDeleted, int replicas) {
         this.bytes = bytes;
-        time = LocalDateTime.now();
-        isDeleted = false;
+        this.time = time;
+        this.isDeleted = isDeleted;
+        this.replicas = checkReplicas(replicas);
+    }
+
+    public BytesEntity(ByteIterable record) {
+        this(getValue(record), getTime(record), isDeleted(record), getReplicas(record));
+    }
+
+    /**
+     * Reads a record written before 1.6.0: value, {@link LocalDateTime} string and {@code "T"/"F"} deleted flag,
+     * both strings are terminated with zero byte.
+     *
+     * @param metadata record in the old layout
+     * @return entity
+     * @throws IllegalArgumentException if the record has unknown layout
+     */
+    public static BytesEntity fromLegacy(ByteIterable metadata) {
+        byte[] record = metadata.getBytesUnsafe();
+        int length = metadata.getLength();
+        if (length < LEGACY_TAIL_LENGTH) {
+            throw new IllegalArgumentException("Legacy record is too short");
+        }
+        boolean isDeleted = record[length - 2] == 'T';
+        int timeEnd = length - LEGACY_TAIL_LENGTH;
+        for (int timeLength : LEGACY_TIME_LENGTHS) {
+            int timeStart = timeEnd - timeLength;
+            if (timeStart < 0) {
+                continue;
+            }
+            try {
+                LocalDateTime dateTime = LocalDateTime.parse(
+                    new String(record, timeStart, timeLength, StandardCharsets.US_ASCII));
+                long millis = dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                return new BytesEntity(Arrays.copyOf(record, timeStart), millis << LOGICAL_BITS, isDeleted);
+            } catch (DateTimeParseException e) {
+                // try the next precision of LocalDateTime#toString
+            }
+        }
+        throw new IllegalArgumentException("Legacy record has no time");
     }
 
-    public BytesEntity(ByteIterable metadata) {
-        bytes = metadata.subIterable(0, metadata.getLength() - 26).getBytesUnsafe();
-        time = LocalDateTime.parse(
-            new String(metadata.subIterable(metadata.getLength() - 26, 23).getBytesUnsafe()));
-        isDeleted = "T".equals(
-            new String(metadata.subIterable(metadata.getLength() - 2, 1).getBytesUnsafe()));
+    /**
+     * @return timestamp of now with zero logical counter
+     */
+    public static long currentTime() {
+        return System.currentTimeMillis() << LOGICAL_BITS;
+    }
+
+    public static ByteIterable toByteIterable(byte[] value, long time, boolean isDeleted) {
+        return toByteIterable(value, time, isDeleted, 0);
+    }
+
+    public static ByteIterable toByteIterable(byte[] value, long time, boolean isDeleted, int replicas) {
+        byte[] record = new byte[HEADER_LENGTH + value.length];
+        record[0] = (byte) (FORMAT_VERSION << 4 | (isDeleted ? DELETED_FLAG : 0));
+        record[1] = (byte) checkReplicas(replicas);
+        for (int i = 0; i < Long.BYTES; i++) {
+            record[TIME_OFFSET + i] = (byte) (time >>> (Long.SIZE - Byte.SIZE * (i + 1)));
+        }
+        System.arraycopy(value, 0, record, HEADER_LENGTH, value.length);
+        return new ArrayByteIterable(record);
+    }
+
+    private static int checkReplicas(int replicas) {
+        if (replicas < 0 || replicas > MAX_REPLICAS) {
+            throw new IllegalArgumentException("Count of replicas must be from 0 to " + MAX_REPLICAS + ": " + replicas);
+        }
+        return replicas;
+    }
+
+    /**
+     * @return a negative number, zero or a positive number if the version of {@code record} is older than,
+     *     the same as or newer than the version of {@code other}
+     */
+    public static int compareVersions(ByteIterable record, ByteIterable other) {
+        int result = Long.compare(getTime(record), getTime(other));
+        if (result != 0) {
+            return result;
+        }
+        result = Boolean.compare(isDeleted(record), isDeleted(other));
+        if (result != 0) {
+            return result;
+        }
+        return compareValues(
+            record.getBytesUnsafe(),
+            HEADER_LENGTH,
+            record.getLength() - HEADER_LENGTH,
+            other.getBytesUnsafe(),
+            HEADER_LENGTH,
+            other.getLength() - HEADER_LENGTH
+        );
+    }
+
+    /**
+     * Compares values of versions with the same time and tombstone flag by unsigned bytes, a shorter value
+     * is less than a longer one which starts with it.
+     */
+    public static int compareValues(
+        byte[] value,
+        int offset,
+        int length,
+        byte[] other,
+        int otherOffset,
+        int otherLength
+    ) {
+        int common = Math.min(length, otherLength);
+        for (int i = 0; i < common; i++) {
+            int result = Integer.compare(value[offset + i] & 0xff, other[otherOffset + i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(length, otherLength);
+    }
+
+    public static boolean isDeleted(ByteIterable record) {
+        return (header(record) & DELETED_FLAG) != 0;
+    }
+
+    public static int getReplicas(ByteIterable record) {
+        header(record);
+        return record.getBytesUnsafe()[1] & 0xff;
+    }
+
+    public static long getTime(ByteIterable record) {
+        header(record);
+        byte[] bytes = record.getBytesUnsafe();
+        long time = 0;
+        for (int i = TIME_OFFSET; i < HEADER_LENGTH; i++) {
+            time = time << Byte.SIZE | (bytes[i] & 0xff);
+        }
+        return time;
+    }
+
+    public static byte[] getValue(ByteIterable record) {
+        header(record);
+        return Arrays.copyOfRange(record.getBytesUnsafe(), HEADER_LENGTH, record.getLength());
+    }
+
+    private static int header(ByteIterable record) {
+        if (record.getLength() < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Record is too short");
+        }
+        int header = record.getBytesUnsafe()[0];
+        if ((header & 0xf0) >>> 4 != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unknown format version of record");
+        }
+        return header;
+    }
+
+    /**
+     * @param record record in the binary layout
+     * @return entity
+     * @throws IllegalArgumentException if the record has unknown layout
+     */
+    public static BytesEntity decode(byte[] record) {
+        return new BytesEntity(new ArrayByteIterable(record));
     }
 
     public ByteIterable toByteIterable() {
-        ByteIterable[] byteIterables = new ByteIterable[3];
-        byteIterables[0] = new ArrayByteIterable(bytes);
-        byteIterables[1] = stringToEntry(time.toString());
-        byteIterables[2] = stringToEntry(isDeleted ? "T" : "F");
-        return new CompoundByteIterable(byteIterables);
+        return toByteIterable(bytes, time, isDeleted, replicas);
+    }
+
+    /**
+     * @return record in the binary layout
+     */
+    public byte[] encode() {
+        return toByteIterable().getBytesUnsafe();
     }
 
     public void setDeleted(boolean deleted) {
@@ -55,11 +243,15 @@ public class BytesEntity {
         return new ArrayByteIterable(bytes);
     }
 
-    public LocalDateTime getTime() {
+    public long getTime() {
         return time;
     }
 
     public boolean isDeleted() {
         return isDeleted;
     }
+
+    public int getReplicas() {
+        return replicas;
+    }
 }
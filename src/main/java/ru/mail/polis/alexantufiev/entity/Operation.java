@@ -0,0 +1,82 @@
+package ru.mail.polis.alexantufiev.entity;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Operation of a batch request.
+ * <p>
+ * A batch is encoded as a sequence of operations: type (1 byte), the length of the key, the key, the length
+ * of the value and the value. Lengths are 4 bytes big-endian, the value of {@link #GET} and {@link #DELETE}
+ * is empty.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public class Operation {
+
+    public static final byte GET = 0;
+    public static final byte PUT = 1;
+    public static final byte DELETE = 2;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final byte type;
+    private final byte[] key;
+    private final byte[] value;
+
+    public Operation(byte type, byte[] key, byte[] value) {
+        if (type < GET || type > DELETE) {
+            throw new IllegalArgumentException("Unknown type of operation: " + type);
+        }
+        this.type = type;
+        this.key = key;
+        this.value = value == null ? EMPTY : value;
+    }
+
+    public static byte[] encode(List<Operation> operations) {
+        int length = 0;
+        for (Operation operation : operations) {
+            length += 1 + 2 * Integer.BYTES + operation.key.length + operation.value.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (Operation operation : operations) {
+            buffer.put(operation.type);
+            buffer.putInt(operation.key.length).put(operation.key);
+            buffer.putInt(operation.value.length).put(operation.value);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are malformed
+     */
+    public static List<Operation> decode(byte[] bytes) {
+        List<Operation> operations = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            while (buffer.hasRemaining()) {
+                byte type = buffer.get();
+                byte[] key = Buffers.getBytes(buffer);
+                operations.add(new Operation(type, key, Buffers.getBytes(buffer)));
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed operations", e);
+        }
+        return operations;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.mail.polis.alexantufiev.entity;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of an {@link Operation} of a batch request.
+ * <p>
+ * Results are encoded in the order of operations as a sequence of the HTTP status code, the length of the value
+ * and the value, both numbers are 4 bytes big-endian.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public class OperationResult {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int status;
+    private final byte[] value;
+
+    public OperationResult(int status) {
+        this(status, EMPTY);
+    }
+
+    public OperationResult(int status, byte[] value) {
+        this.status = status;
+        this.value = value;
+    }
+
+    public static byte[] encode(List<OperationResult> results) {
+        int length = 0;
+        for (OperationResult result : results) {
+            length += 2 * Integer.BYTES + result.value.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (OperationResult result : results) {
+            buffer.putInt(result.status).putInt(result.value.length).put(result.value);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are malformed
+     */
+    public static List<OperationResult> decode(byte[] bytes) {
+        List<OperationResult> results = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            while (buffer.hasRemaining()) {
+                int status = buffer.getInt();
+                results.add(new OperationResult(status, Buffers.getBytes(buffer)));
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed results", e);
+        }
+        return results;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+}
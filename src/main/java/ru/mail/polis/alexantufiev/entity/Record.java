@@ -0,0 +1,78 @@
+package ru.mail.polis.alexantufiev.entity;
+
+import jetbrains.exodus.ByteIterable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Key of the storage with its entity.
+ * <p>
+ * A list of records is encoded as a sequence of the length of the key, the key, the length of the entity
+ * and the entity in the binary layout of {@link BytesEntity}. Lengths are 4 bytes big-endian.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public class Record {
+
+    private final byte[] key;
+    private final BytesEntity entity;
+
+    public Record(byte[] key, BytesEntity entity) {
+        this.key = key;
+        this.entity = entity;
+    }
+
+    public static byte[] encode(List<Record> records) {
+        List<ByteIterable> entities = new ArrayList<>(records.size());
+        int length = 0;
+        for (Record record : records) {
+            ByteIterable entity = record.entity.toByteIterable();
+            entities.add(entity);
+            length += getEncodedLength(record);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < records.size(); i++) {
+            byte[] key = records.get(i).key;
+            ByteIterable entity = entities.get(i);
+            buffer.putInt(key.length).put(key);
+            buffer.putInt(entity.getLength()).put(entity.getBytesUnsafe(), 0, entity.getLength());
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @return length of the record in the encoded list
+     */
+    public static int getEncodedLength(Record record) {
+        return 2 * Integer.BYTES + record.key.length + BytesEntity.HEADER_LENGTH + record.entity.getBytes().length;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are malformed
+     */
+    public static List<Record> decode(byte[] bytes) {
+        List<Record> records = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            while (buffer.hasRemaining()) {
+                byte[] key = Buffers.getBytes(buffer);
+                records.add(new Record(key, BytesEntity.decode(Buffers.getBytes(buffer))));
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed records", e);
+        }
+        return records;
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    public BytesEntity getEntity() {
+        return entity;
+    }
+}
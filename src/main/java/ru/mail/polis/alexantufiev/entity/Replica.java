@@ -2,11 +2,13 @@ package ru.mail.polis.alexantufiev.entity;
 
 import java.util.Optional;
 
+import static ru.mail.polis.alexantufiev.entity.BytesEntity.MAX_REPLICAS;
+
 /**
  * Реплика.
  *
  * @author Aleksey Antufev
- * @version 1.1.0
+ * @version 1.6.0
  * @since 1.1.0 16.10.2018
  */
 public class Replica {
@@ -19,6 +21,14 @@ public class Replica {
         this.countOfNodes = countOfNodes;
     }
 
+    /**
+     * @param replica      {@code ack/from}, the default quorum of all nodes if empty
+     * @param countOfNodes count of nodes of the topology
+     * @param noReplica    whether the request is a local one
+     * @throws IllegalArgumentException if {@code ack} is greater than {@code from} or {@code from} is less than
+     *                                  the count of nodes and greater than {@link BytesEntity#MAX_REPLICAS},
+     *                                  the count which a record keeps
+     */
     public static Optional<Replica> of(
         String replica,
         int countOfNodes,
@@ -39,6 +49,9 @@ public class Replica {
             if (requests > nodes || requests == 0) {
                 throw new IllegalArgumentException("Count of nodes must be greater or equal then count of requests");
             }
+            if (nodes > MAX_REPLICAS && nodes != countOfNodes) {
+                throw new IllegalArgumentException("Count of nodes must not be greater than " + MAX_REPLICAS);
+            }
             return Optional.of(new Replica(requests, nodes));
         }
     }
@@ -50,4 +63,21 @@ public class Replica {
     public int getCountOfNodes() {
         return countOfNodes;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Replica)) {
+            return false;
+        }
+        Replica replica = (Replica) o;
+        return countRequests == replica.countRequests && countOfNodes == replica.countOfNodes;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * countRequests + countOfNodes;
+    }
 }
@@ -0,0 +1,111 @@
+package ru.mail.polis.alexantufiev.entity;
+
+import java.util.Arrays;
+
+/**
+ * Answer of a single replica on a read request.
+ * <p>
+ * The value may be a slice of a bigger array, e.g. of a record in the binary layout of {@link BytesEntity},
+ * so it is written to a response without a copy.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public class ReplicaResponse {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final ReplicaResponse NO_EXIST = new ReplicaResponse(State.NO_EXIST, EMPTY, Long.MIN_VALUE, 0);
+
+    private final State state;
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private final long time;
+    private final int replicas;
+
+    private ReplicaResponse(State state, byte[] bytes, int offset, int length, long time, int replicas) {
+        this.state = state;
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.time = time;
+        this.replicas = replicas;
+    }
+
+    private ReplicaResponse(State state, byte[] bytes, long time, int replicas) {
+        this(state, bytes, 0, bytes.length, time, replicas);
+    }
+
+    public static ReplicaResponse exist(byte[] bytes, long time, int replicas) {
+        return new ReplicaResponse(State.EXIST, bytes, time, replicas);
+    }
+
+    /**
+     * @param bytes  array with the value
+     * @param offset offset of the value in the array
+     * @param length length of the value
+     */
+    public static ReplicaResponse exist(byte[] bytes, int offset, int length, long time, int replicas) {
+        return new ReplicaResponse(State.EXIST, bytes, offset, length, time, replicas);
+    }
+
+    public static ReplicaResponse noExist() {
+        return NO_EXIST;
+    }
+
+    public static ReplicaResponse deleted(long time, int replicas) {
+        return new ReplicaResponse(State.DELETED, EMPTY, time, replicas);
+    }
+
+    /**
+     * Chooses the newest of two answers by the order of {@link BytesEntity#compareVersions}.
+     *
+     * @param other other answer
+     * @return the newest answer
+     */
+    public ReplicaResponse newest(ReplicaResponse other) {
+        int result = Long.compare(other.time, time);
+        if (result == 0) {
+            result = Boolean.compare(other.state == State.DELETED, state == State.DELETED);
+        }
+        if (result == 0) {
+            result = BytesEntity.compareValues(other.bytes, other.offset, other.length, bytes, offset, length);
+        }
+        return result > 0 ? other : this;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the value, it is copied if it is a slice of a bigger array
+     */
+    public byte[] getBytes() {
+        return offset == 0 && length == bytes.length ? bytes : Arrays.copyOfRange(bytes, offset, offset + length);
+    }
+
+    /**
+     * @return array which contains the value from {@link #getOffset()}, it must not be modified
+     */
+    public byte[] getArray() {
+        return bytes;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+}
@@ -0,0 +1,152 @@
+package ru.mail.polis.alexantufiev.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Metrics of a node which are exported in Prometheus text format.
+ * <p>
+ * Metrics are registered once, when their owner is created, and the owner keeps them in fields, so recording
+ * does not look anything up. A metric of a family is a series with its own labels, labels are given as pairs
+ * of a name and a value.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public class MetricsRegistry {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * @return new latency histogram, it is exported as a summary in seconds
+     */
+    @NotNull
+    public Timer timer(@NotNull String name, @NotNull String help, String... labels) {
+        Timer timer = new Timer();
+        timer(name, help, timer, labels);
+        return timer;
+    }
+
+    /**
+     * Registers a latency histogram which is kept by its owner.
+     */
+    public void timer(@NotNull String name, @NotNull String help, @NotNull Timer timer, String... labels) {
+        register(name, help, "summary", labels, timer::write);
+    }
+
+    /**
+     * @return new counter, its name should end with {@code _total}
+     */
+    @NotNull
+    public Counter counter(@NotNull String name, @NotNull String help, String... labels) {
+        Counter counter = new Counter();
+        counter(name, help, counter::get, labels);
+        return counter;
+    }
+
+    /**
+     * Registers a counter which is kept by its owner and read on every scrape.
+     */
+    public void counter(@NotNull String name, @NotNull String help, @NotNull DoubleSupplier value, String... labels) {
+        register(name, help, "counter", labels, (out, metric, series) -> appendValue(out, metric, series, value));
+    }
+
+    /**
+     * Registers a value which may go up and down, it is read on every scrape.
+     */
+    public void gauge(@NotNull String name, @NotNull String help, @NotNull DoubleSupplier value, String... labels) {
+        register(name, help, "gauge", labels, (out, metric, series) -> appendValue(out, metric, series, value));
+    }
+
+    /**
+     * @return all metrics in Prometheus text format
+     */
+    @NotNull
+    public synchronized String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            Family family = entry.getValue();
+            out.append("# HELP ").append(entry.getKey()).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(entry.getKey()).append(' ').append(family.type).append('\n');
+            for (Series series : family.series) {
+                series.sample.write(out, entry.getKey(), series.labels);
+            }
+        }
+        return out.toString();
+    }
+
+    private synchronized void register(String name, String help, String type, String[] labels, Sample sample) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be pairs of a name and a value: " + name);
+        }
+        Family family = families.computeIfAbsent(name, key -> new Family(type, help));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+        }
+        StringBuilder series = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                series.append(',');
+            }
+            series.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        family.series.add(new Series(series.toString(), sample));
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void appendValue(StringBuilder out, String name, String labels, DoubleSupplier value) {
+        appendSeries(out, name, labels, "");
+        out.append(value.getAsDouble()).append('\n');
+    }
+
+    /**
+     * Appends the name of a series with its labels and the space before the value.
+     */
+    static void appendSeries(StringBuilder out, String name, String labels, String extraLabel) {
+        out.append(name);
+        if (!labels.isEmpty() || !extraLabel.isEmpty()) {
+            out.append('{').append(labels);
+            if (!labels.isEmpty() && !extraLabel.isEmpty()) {
+                out.append(',');
+            }
+            out.append(extraLabel).append('}');
+        }
+        out.append(' ');
+    }
+
+    private interface Sample {
+        void write(StringBuilder out, String name, String labels);
+    }
+
+    private static final class Family {
+        private final String type;
+        private final String help;
+        private final List<Series> series = new ArrayList<>();
+
+        private Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private static final class Series {
+        private final String labels;
+        private final Sample sample;
+
+        private Series(String labels, Sample sample) {
+            this.labels = labels;
+            this.sample = sample;
+        }
+    }
+}
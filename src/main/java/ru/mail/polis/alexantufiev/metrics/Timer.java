@@ -0,0 +1,67 @@
+package ru.mail.polis.alexantufiev.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histogram which is written by many threads without locks and allocations.
+ * <p>
+ * Latencies are kept in microseconds with two significant digits, a latency longer than
+ * {@link #HIGHEST_MICROS} is counted as this one. Quantiles are computed over the interval since the previous
+ * scrape, the count and the sum are cumulative.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public class Timer {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final double MICROS_PER_SECOND = TimeUnit.SECONDS.toMicros(1);
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Recorder recorder = new Recorder(HIGHEST_MICROS, 2);
+    private Histogram interval;
+    private long count;
+    private double sumMicros;
+
+    /**
+     * @param nanos latency
+     */
+    public void record(long nanos) {
+        recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0)), HIGHEST_MICROS));
+    }
+
+    /**
+     * @param startNanos value of {@link System#nanoTime()} at the start of the operation
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Writes the summary in Prometheus text format.
+     *
+     * @param labels labels of the series without braces, may be empty
+     */
+    synchronized void write(StringBuilder out, String name, String labels) {
+        interval = recorder.getIntervalHistogram(interval);
+        long intervalCount = interval.getTotalCount();
+        count += intervalCount;
+        sumMicros += interval.getMean() * intervalCount;
+        for (double quantile : QUANTILES) {
+            MetricsRegistry.appendSeries(out, name, labels, "quantile=\"" + quantile + '"');
+            if (intervalCount == 0) {
+                out.append("NaN\n");
+            } else {
+                out.append(interval.getValueAtPercentile(quantile * 100) / MICROS_PER_SECOND).append('\n');
+            }
+        }
+        MetricsRegistry.appendSeries(out, name + "_sum", labels, "");
+        out.append(sumMicros / MICROS_PER_SECOND).append('\n');
+        MetricsRegistry.appendSeries(out, name + "_count", labels, "");
+        out.append(count).append('\n');
+    }
+}
@@ -0,0 +1,197 @@
+package ru.mail.polis.alexantufiev.service;
+
+import one.nio.http.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sampled access log of requests to {@code /v0/entity}.
+ * <p>
+ * A sampled request is put into a ring buffer of preallocated arrays, so the thread which answers it neither
+ * allocates nor waits for the log, and a background thread writes entries to the logger {@code access}.
+ * An entry is dropped when the buffer is full. The key is logged as the hash of its id, bodies are not logged.
+ * The disabled log has neither the buffer nor the thread, and checking it is a read of a final field.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class AccessLog {
+
+    /**
+     * Count of answered replicas which is unknown, e.g. of a local request or of a failed read.
+     */
+    static final int UNKNOWN = -1;
+
+    private static final Logger logger = LoggerFactory.getLogger("access");
+    private static final String ID = "id=";
+
+    private final int sampleRate;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLongArray published;
+    private final long[] times;
+    private final int[] methods;
+    private final int[] keyHashes;
+    private final int[] statuses;
+    private final long[] latencies;
+    private final boolean[] localFlags;
+    private final int[] answered;
+    private final int[] replicaCounts;
+    private final ScheduledExecutorService writer;
+
+    /**
+     * @param sampleRate one of {@code sampleRate} requests is logged, {@code 0} disables the log
+     * @param capacity   count of entries of the buffer, it is rounded up to a power of two
+     */
+    AccessLog(String name, int sampleRate, int capacity) {
+        this.sampleRate = Math.max(sampleRate, 0);
+        int size = sampleRate > 0 ? Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) : 0;
+        mask = size - 1;
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        times = new long[size];
+        methods = new int[size];
+        keyHashes = new int[size];
+        statuses = new int[size];
+        latencies = new long[size];
+        localFlags = new boolean[size];
+        answered = new int[size];
+        replicaCounts = new int[size];
+        writer = sampleRate > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    boolean isEnabled() {
+        return sampleRate > 0;
+    }
+
+    /**
+     * @return whether the next request should be logged
+     */
+    boolean isSampled() {
+        return sampleRate == 1 || sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    /**
+     * Puts the entry into the buffer without allocations, the entry is dropped if the buffer is full.
+     *
+     * @param method   method of {@link Request}
+     * @param keyHash  hash of the id of the entity
+     * @param status   status of the response
+     * @param acks     count of replicas which have answered or {@link #UNKNOWN}
+     * @param replicas count of replicas of the request, {@code 0} for a local request
+     */
+    void add(int method, int keyHash, int status, long latencyNanos, boolean isLocal, int acks, int replicas) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int slot = (int) sequence & mask;
+        times[slot] = System.currentTimeMillis();
+        methods[slot] = method;
+        keyHashes[slot] = keyHash;
+        statuses[slot] = status;
+        latencies[slot] = latencyNanos;
+        localFlags[slot] = isLocal;
+        answered[slot] = acks;
+        replicaCounts[slot] = replicas;
+        published.lazySet(slot, sequence);
+    }
+
+    void start(long periodMillis) {
+        if (writer != null) {
+            writer.scheduleWithFixedDelay(this::drain, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void stop() {
+        if (writer != null) {
+            writer.shutdown();
+            drain();
+        }
+    }
+
+    /**
+     * Writes published entries in the order of their sequence, it stops at an entry which is not written yet.
+     */
+    private synchronized void drain() {
+        StringBuilder line = new StringBuilder();
+        long sequence = consumed.get();
+        while (sequence < claimed.get()) {
+            int slot = (int) sequence & mask;
+            if (published.get(slot) != sequence) {
+                break;
+            }
+            line.setLength(0);
+            line.append(times[slot])
+                .append(" method=").append(getMethod(methods[slot]))
+                .append(" key=").append(Integer.toHexString(keyHashes[slot]))
+                .append(" status=").append(statuses[slot])
+                .append(" latency_us=").append(TimeUnit.NANOSECONDS.toMicros(latencies[slot]))
+                .append(" role=").append(localFlags[slot] ? "local" : "coordinator");
+            if (replicaCounts[slot] > 0) {
+                line.append(" acks=").append(answered[slot] == UNKNOWN ? "-" : Integer.toString(answered[slot]))
+                    .append('/').append(replicaCounts[slot]);
+            }
+            sequence++;
+            consumed.set(sequence);
+            logger.info(line.toString());
+        }
+        long lost = dropped.sumThenReset();
+        if (lost > 0) {
+            logger.warn("{} entries of access log are dropped", lost);
+        }
+    }
+
+    private static String getMethod(int method) {
+        switch (method) {
+            case Request.METHOD_GET:
+                return "GET";
+            case Request.METHOD_PUT:
+                return "PUT";
+            case Request.METHOD_DELETE:
+                return "DELETE";
+            default:
+                return Integer.toString(method);
+        }
+    }
+
+    /**
+     * Hash of the {@code id} parameter of the URI without its copy, it is equal to {@link String#hashCode()}
+     * of the parameter.
+     */
+    static int keyHash(String uri) {
+        int start = uri.indexOf('?');
+        while (start >= 0 && !uri.startsWith(ID, start + 1)) {
+            start = uri.indexOf('&', start + 1);
+        }
+        if (start < 0) {
+            return 0;
+        }
+        int hash = 0;
+        for (int i = start + 1 + ID.length(); i < uri.length() && uri.charAt(i) != '&'; i++) {
+            hash = 31 * hash + uri.charAt(i);
+        }
+        return hash;
+    }
+}
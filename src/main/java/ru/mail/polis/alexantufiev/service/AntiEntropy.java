@@ -0,0 +1,323 @@
+package ru.mail.polis.alexantufiev.service;
+
+import jetbrains.exodus.ByteIterable;
+import one.nio.http.Response;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.mail.polis.KVDao;
+import ru.mail.polis.alexantufiev.dao.MerkleTree;
+import ru.mail.polis.alexantufiev.dao.RecordIterator;
+import ru.mail.polis.alexantufiev.entity.BytesEntity;
+import ru.mail.polis.alexantufiev.entity.Record;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background synchronization of replicas with Merkle trees.
+ * <p>
+ * For every peer a {@link MerkleTree} of the records which both this node and the peer replicate is kept
+ * in memory, it is built by a scan of {@link KVDao} on start and updated by the listener of writes. Every
+ * {@code periodMillis} the trees of the peer for this node are requested level by level, only the nodes with
+ * different hashes are descended, and records of different leaves are pulled and written with last-write-wins.
+ * Each node only pulls, so a newer record of this node reaches the peer when the peer synchronizes with it.
+ * <p>
+ * Records of a leaf are read by {@link KVDao#hashRange}, so a synchronization reads only the records of different
+ * leaves. A response is limited by {@link #MAX_RECORDS_BYTES}, the next request continues after its last record.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class AntiEntropy {
+
+    static final String HASHES_PATH = "/v0/merkle";
+    static final String RECORDS_PATH = "/v0/merkle/records";
+    static final String NODE = "X-Node: ";
+    /**
+     * Header of a response which is limited by size, the rest of records is requested after its last record.
+     */
+    static final String MORE = "X-More: ";
+
+    private static final Logger logger = LoggerFactory.getLogger(AntiEntropy.class);
+    private static final String HASHES_WITH_LEVEL_PATTERN = HASHES_PATH + "?level=%d";
+    private static final int MAX_RECORDS_BYTES = 512 * 1024;
+
+    private final String self;
+    private final KVDao dao;
+    private final ConsistentHashRing ring;
+    private final int countOfNodes;
+    private final Map<String, Peer> peers;
+    private final Map<String, MerkleTree> trees;
+    private final ScheduledExecutorService executor;
+
+    AntiEntropy(
+        String name,
+        String self,
+        KVDao dao,
+        ConsistentHashRing ring,
+        int countOfNodes,
+        Map<String, Peer> peers,
+        int depth
+    ) {
+        this.self = self;
+        this.dao = dao;
+        this.ring = ring;
+        this.countOfNodes = countOfNodes;
+        this.peers = peers;
+        trees = new HashMap<>(peers.size());
+        for (String peer : peers.keySet()) {
+            trees.put(peer, new MerkleTree(depth));
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Builds the trees and schedules synchronization, it must be called before the node accepts writes.
+     */
+    void start(long periodMillis) {
+        dao.scan(this::onRecord);
+        dao.setListener(this::onRecord);
+        executor.scheduleWithFixedDelay(this::synchronize, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        executor.shutdownNow();
+        dao.setListener(null);
+    }
+
+    private void onRecord(@NotNull byte[] key, @Nullable ByteIterable old, @Nullable ByteIterable record) {
+        List<String> oldReplicas = getReplicas(key, old);
+        List<String> replicas = getReplicas(key, record);
+        for (Map.Entry<String, MerkleTree> tree : trees.entrySet()) {
+            String peer = tree.getKey();
+            tree.getValue().update(
+                key,
+                oldReplicas.contains(peer) ? old : null,
+                replicas.contains(peer) ? record : null
+            );
+        }
+    }
+
+    /**
+     * Replicas of the record, or an empty list if this node is not one of them.
+     */
+    private List<String> getReplicas(byte[] key, @Nullable ByteIterable record) {
+        return record == null ? Collections.emptyList() : getReplicas(key, BytesEntity.getReplicas(record));
+    }
+
+    private List<String> getReplicas(byte[] key, int replicas) {
+        List<String> nodes = ring.getNodes(key, replicas == 0 ? countOfNodes : replicas);
+        return nodes.contains(self) ? nodes : Collections.emptyList();
+    }
+
+    /**
+     * @throws IllegalArgumentException  if the peer is unknown
+     * @throws IndexOutOfBoundsException if there is no such node in the tree
+     */
+    @NotNull
+    long[] getHashes(String peer, int level, int[] indexes) {
+        MerkleTree tree = getTree(peer);
+        long[] hashes = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            hashes[i] = tree.getHash(level, indexes[i]);
+        }
+        return hashes;
+    }
+
+    /**
+     * Finds records of the peer in the requested buckets in the order of {@link KVDao#hashRange}, their encoded
+     * size is limited by {@link #MAX_RECORDS_BYTES}, but at least one record is found.
+     *
+     * @param request encoded by {@link #encodeRecordsRequest}
+     * @param records found records are added to it
+     * @return {@code true} if all the records are found, otherwise the rest is after the last found record
+     * @throws IllegalArgumentException if the peer is unknown or the request is malformed
+     */
+    boolean getRecords(String peer, byte[] request, List<Record> records) {
+        MerkleTree tree = getTree(peer);
+        ByteBuffer buffer = ByteBuffer.wrap(request);
+        if (buffer.remaining() < Integer.BYTES) {
+            throw new IllegalArgumentException("Malformed request of records");
+        }
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+            throw new IllegalArgumentException("Malformed count of buckets: " + count);
+        }
+        int[] buckets = new int[count];
+        buffer.asIntBuffer().get(buckets);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        byte[] after = buffer.hasRemaining() ? Arrays.copyOfRange(request, buffer.position(), request.length) : null;
+        int afterBucket = after == null ? 0 : tree.getBucket(after);
+        int size = 0;
+        for (int bucket : buckets) {
+            if (bucket < 0 || bucket >= 1 << tree.getDepth()) {
+                throw new IllegalArgumentException("No bucket " + bucket);
+            }
+            if (bucket < afterBucket) {
+                continue;
+            }
+            byte[] start = after != null && bucket == afterBucket ? after : null;
+            try (RecordIterator iterator = dao.hashRange(tree.getFirstHash(bucket), tree.getEndHash(bucket), start)) {
+                while (iterator.hasNext()) {
+                    Record record = iterator.next();
+                    if (!getReplicas(record.getKey(), record.getEntity().getReplicas()).contains(peer)) {
+                        continue;
+                    }
+                    size += Record.getEncodedLength(record);
+                    if (size > MAX_RECORDS_BYTES && !records.isEmpty()) {
+                        return false;
+                    }
+                    records.add(record);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param buckets ascending buckets
+     * @param after   key after which the previous response stopped or {@code null}
+     */
+    static byte[] encodeRecordsRequest(int[] buckets, @Nullable byte[] after) {
+        int afterLength = after == null ? 0 : after.length;
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * (1 + buckets.length) + afterLength);
+        buffer.putInt(buckets.length);
+        for (int bucket : buckets) {
+            buffer.putInt(bucket);
+        }
+        if (after != null) {
+            buffer.put(after);
+        }
+        return buffer.array();
+    }
+
+    private MerkleTree getTree(String peer) {
+        MerkleTree tree = peer == null ? null : trees.get(peer);
+        if (tree == null) {
+            throw new IllegalArgumentException("Unknown node: " + peer);
+        }
+        return tree;
+    }
+
+    private void synchronize() {
+        for (Map.Entry<String, Peer> peer : peers.entrySet()) {
+            try {
+                synchronize(peer.getKey(), peer.getValue());
+            } catch (Exception e) {
+                logger.debug("*** ANTI-ENTROPY FAILED *** NODE='{}' MESSAGE='{}'", peer.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private void synchronize(String peer, Peer client) throws Exception {
+        MerkleTree tree = trees.get(peer);
+        int[] indexes = {0};
+        for (int level = 0; level <= tree.getDepth() && indexes.length > 0; level++) {
+            Response response = client.post(
+                String.format(HASHES_WITH_LEVEL_PATTERN, level),
+                encode(indexes),
+                NODE + self
+            );
+            checkStatus(response);
+            long[] hashes = decodeLongs(response.getBody());
+            if (hashes.length != indexes.length) {
+                throw new IOException("WRONG COUNT OF HASHES: " + hashes.length);
+            }
+            int[] different = new int[indexes.length];
+            int count = 0;
+            for (int i = 0; i < indexes.length; i++) {
+                if (hashes[i] != tree.getHash(level, indexes[i])) {
+                    different[count++] = indexes[i];
+                }
+            }
+            if (level == tree.getDepth()) {
+                pull(peer, client, Arrays.copyOf(different, count));
+                return;
+            }
+            indexes = new int[2 * count];
+            for (int i = 0; i < count; i++) {
+                indexes[2 * i] = 2 * different[i];
+                indexes[2 * i + 1] = 2 * different[i] + 1;
+            }
+        }
+    }
+
+    private void pull(String peer, Peer client, int[] buckets) throws Exception {
+        if (buckets.length == 0) {
+            return;
+        }
+        int written = 0;
+        byte[] after = null;
+        boolean hasMore = true;
+        while (hasMore && !Thread.currentThread().isInterrupted()) {
+            Response response = client.post(RECORDS_PATH, encodeRecordsRequest(buckets, after), NODE + self);
+            checkStatus(response);
+            List<Record> records = Record.decode(response.getBody());
+            for (Record record : records) {
+                if (dao.upsert(record.getKey(), record.getEntity())) {
+                    written++;
+                }
+            }
+            hasMore = response.getHeader(MORE) != null && !records.isEmpty();
+            if (hasMore) {
+                after = records.get(records.size() - 1).getKey();
+            }
+        }
+        logger.debug("*** ANTI-ENTROPY *** NODE='{}' BUCKETS='{}' WRITTEN='{}'", peer, buckets.length, written);
+    }
+
+    private static void checkStatus(Response response) throws IOException {
+        int status = response.getStatus();
+        if (status != 200) {
+            throw new IOException("WRONG STATUS: " + status);
+        }
+    }
+
+    static byte[] encode(int[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES);
+        buffer.asIntBuffer().put(values);
+        return buffer.array();
+    }
+
+    static byte[] encode(long[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Long.BYTES);
+        buffer.asLongBuffer().put(values);
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the length of bytes is not a multiple of 4
+     */
+    static int[] decodeInts(byte[] bytes) {
+        if (bytes.length % Integer.BYTES != 0) {
+            throw new IllegalArgumentException("Malformed ints");
+        }
+        int[] values = new int[bytes.length / Integer.BYTES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(values);
+        return values;
+    }
+
+    private static long[] decodeLongs(byte[] bytes) throws IOException {
+        if (bytes.length % Long.BYTES != 0) {
+            throw new IOException("Malformed longs");
+        }
+        long[] values = new long[bytes.length / Long.BYTES];
+        ByteBuffer.wrap(bytes).asLongBuffer().get(values);
+        return values;
+    }
+}
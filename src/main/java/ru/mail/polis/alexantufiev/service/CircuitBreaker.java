@@ -0,0 +1,82 @@
+package ru.mail.polis.alexantufiev.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker of a peer with a phi accrual failure detector.
+ * <p>
+ * The circuit is opened after {@link #FAILURES_TO_OPEN} failed requests in a row, or when heartbeats of the peer
+ * are late: phi is the suspicion that the peer is down, it grows with the time since the last heartbeat divided by
+ * the mean interval between heartbeats, which is estimated as an exponential distribution like Cassandra does.
+ * Requests to an open circuit fail at once, a heartbeat of the peer closes it again.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class CircuitBreaker {
+
+    private static final int FAILURES_TO_OPEN = 3;
+    private static final double PHI_THRESHOLD = 8;
+    private static final double PHI_FACTOR = 1 / Math.log(10);
+    private static final double INTERVAL_WEIGHT = 0.1;
+
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile boolean open;
+    private volatile long lastHeartbeatNanos;
+    private volatile double meanIntervalNanos;
+
+    /**
+     * @return whether a request can be sent to the peer
+     */
+    boolean allowRequest(long nowNanos) {
+        if (open) {
+            return false;
+        }
+        if (getPhi(nowNanos) > PHI_THRESHOLD) {
+            open = true;
+            return false;
+        }
+        return true;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    void onSuccess() {
+        failures.set(0);
+    }
+
+    void onFailure() {
+        if (failures.incrementAndGet() >= FAILURES_TO_OPEN) {
+            open = true;
+        }
+    }
+
+    /**
+     * The peer has answered a probe, so the circuit is closed.
+     */
+    synchronized void onHeartbeat(long nowNanos) {
+        if (lastHeartbeatNanos != 0) {
+            double interval = nowNanos - lastHeartbeatNanos;
+            meanIntervalNanos = meanIntervalNanos == 0
+                ? interval
+                : meanIntervalNanos + INTERVAL_WEIGHT * (interval - meanIntervalNanos);
+        }
+        lastHeartbeatNanos = nowNanos;
+        failures.set(0);
+        open = false;
+    }
+
+    /**
+     * @return suspicion that the peer is down, {@code 0} until the interval of heartbeats is known
+     */
+    double getPhi(long nowNanos) {
+        double mean = meanIntervalNanos;
+        if (mean == 0) {
+            return 0;
+        }
+        return PHI_FACTOR * (nowNanos - lastHeartbeatNanos) / mean;
+    }
+}
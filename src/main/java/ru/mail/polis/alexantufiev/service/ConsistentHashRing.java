@@ -0,0 +1,82 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.jetbrains.annotations.NotNull;
+import ru.mail.polis.alexantufiev.entity.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Consistent hashing ring with virtual nodes, which chooses replicas of a key.
+ * <p>
+ * Every node of the topology is placed on the ring {@code virtualNodes} times. Replicas of a key are the first
+ * distinct nodes met walking clockwise from the hash of the key, so adding a node moves only about {@code 1/N}
+ * of the keys.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public class ConsistentHashRing {
+
+    private final long[] points;
+    private final String[] owners;
+    private final int countOfNodes;
+
+    public ConsistentHashRing(@NotNull Set<String> topology, int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Count of virtual nodes must be positive");
+        }
+        TreeMap<Long, String> ring = new TreeMap<>();
+        for (String node : topology) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.putIfAbsent(hash((node + '#' + i).getBytes(StandardCharsets.UTF_8)), node);
+            }
+        }
+        points = new long[ring.size()];
+        owners = new String[ring.size()];
+        int index = 0;
+        for (Map.Entry<Long, String> entry : ring.entrySet()) {
+            points[index] = entry.getKey();
+            owners[index] = entry.getValue();
+            index++;
+        }
+        countOfNodes = topology.size();
+    }
+
+    /**
+     * Returns replicas of the key.
+     *
+     * @param key   key
+     * @param count count of replicas
+     * @return distinct nodes in the order of preference, not more than the size of the topology
+     */
+    @NotNull
+    public List<String> getNodes(@NotNull byte[] key, int count) {
+        int size = Math.min(count, countOfNodes);
+        List<String> nodes = new ArrayList<>(size);
+        if (size <= 0) {
+            return nodes;
+        }
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        for (int i = 0; i < points.length && nodes.size() < size; i++) {
+            String owner = owners[(index + i) % points.length];
+            if (!nodes.contains(owner)) {
+                nodes.add(owner);
+            }
+        }
+        return nodes;
+    }
+
+    private static long hash(@NotNull byte[] bytes) {
+        return Hashing.hash(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How {@link KVServiceImpl} runs handlers of requests and requests to replicas.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public enum ExecutionMode {
+
+    /**
+     * Fixed pools of platform threads, handlers are rejected when the queue is full.
+     */
+    POOL,
+
+    /**
+     * A new virtual thread for every task, the count of tasks in flight is limited only by connections.
+     * <p>
+     * The sources are built for Java 8, so the executor is looked up by reflection and needs a Java 21 runtime,
+     * {@link #POOL} is used on older ones. The Gradle wrapper does not run on Java 21, so the tests cover only
+     * {@link #POOL}, and the mode is run by the {@code load} task with {@code -PloadJavaHome}.
+     */
+    VIRTUAL_THREADS;
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionMode.class);
+
+    /**
+     * @param name {@code "pool"} or {@code "virtual"}
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static ExecutionMode of(String name) {
+        switch (name) {
+            case "pool":
+                return POOL;
+            case "virtual":
+                return VIRTUAL_THREADS;
+            default:
+                throw new IllegalArgumentException("Unknown execution mode: " + name);
+        }
+    }
+
+    /**
+     * @param name      prefix of names of threads
+     * @param threads   count of threads of the pool
+     * @param queueSize size of the queue of the pool, it is unbounded if the size is not positive
+     * @return executor of this mode
+     */
+    ExecutorService newExecutor(String name, int threads, int queueSize) {
+        if (this == VIRTUAL_THREADS) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                String version = System.getProperty("java.version");
+                logger.warn("Virtual threads are not supported by Java {}, thread pool is used", version);
+            }
+        }
+        BlockingQueue<Runnable> queue = queueSize > 0
+            ? new ArrayBlockingQueue<>(queueSize)
+            : new LinkedBlockingQueue<>();
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends heartbeats to peers, so their circuit breakers know whether they are up.
+ * <p>
+ * Every peer is pinged with {@link RpcFrame#PING} every {@code periodMillis} by its own task, so a node which
+ * does not answer does not delay heartbeats of others. A ping waits for the answer not longer than the period.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class FailureDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(FailureDetector.class);
+
+    private final Collection<Peer> peers;
+    private final ScheduledExecutorService executor;
+
+    FailureDetector(String name, Collection<Peer> peers) {
+        this.peers = peers;
+        executor = Executors.newScheduledThreadPool(Math.max(1, peers.size()), runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start(long periodMillis) {
+        for (Peer peer : peers) {
+            executor.scheduleWithFixedDelay(
+                () -> ping(peer, (int) periodMillis),
+                0,
+                periodMillis,
+                TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    private static void ping(Peer peer, int timeoutMillis) {
+        boolean wasDown = peer.isDown();
+        try {
+            boolean isUp = peer.ping(timeoutMillis);
+            if (wasDown && isUp) {
+                logger.debug("*** NODE IS UP *** NODE='{}'", peer.getEndpoint());
+            } else if (!wasDown && peer.isDown()) {
+                logger.debug("*** NODE IS DOWN *** NODE='{}'", peer.getEndpoint());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.mail.polis.alexantufiev.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects answers of replicas which were requested in parallel.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+final class FanOut {
+
+    private FanOut() {
+    }
+
+    /**
+     * Waits for {@code ack} successful answers.
+     * <p>
+     * The returned future is completed as soon as {@code ack} answers arrive, or when all the requests are finished.
+     * In the last case it contains less than {@code ack} answers, so the caller can treat it as a failed quorum.
+     * Failed requests are not included in the result.
+     *
+     * @param futures requests sent to replicas
+     * @param ack     count of answers which is enough
+     * @param <T>     type of answer
+     * @return future with successful answers
+     */
+    static <T> CompletableFuture<List<T>> collect(List<CompletableFuture<T>> futures, int ack) {
+        CompletableFuture<List<T>> result = new CompletableFuture<>();
+        if (futures.isEmpty()) {
+            result.complete(new ArrayList<>());
+            return result;
+        }
+        List<T> answers = new ArrayList<>(ack);
+        AtomicInteger settled = new AtomicInteger();
+        for (CompletableFuture<T> future : futures) {
+            future.whenComplete((answer, throwable) -> {
+                synchronized (answers) {
+                    if (result.isDone()) {
+                        return;
+                    }
+                    if (throwable == null) {
+                        answers.add(answer);
+                    }
+                    if (answers.size() >= ack || settled.incrementAndGet() == futures.size()) {
+                        result.complete(new ArrayList<>(answers));
+                    }
+                }
+            });
+        }
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+package ru.mail.polis.alexantufiev.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits hedged requests to a share of all requests.
+ * <p>
+ * Every request earns a part of a token, a hedged request spends a whole one, and not more than
+ * {@code maxHedges} tokens are saved, so hedges never add more than {@code percent} of load even when all
+ * nodes are slow, while short bursts of slowness are still covered.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class HedgeBudget {
+
+    private static final long TOKEN = 100;
+
+    private final long tokensPerRequest;
+    private final long maxTokens;
+    private final AtomicLong tokens = new AtomicLong();
+
+    /**
+     * @param percent   share of hedged requests in percents
+     * @param maxHedges count of hedged requests which can be saved for a burst
+     */
+    HedgeBudget(int percent, int maxHedges) {
+        if (percent < 0 || percent > 100 || maxHedges < 0) {
+            throw new IllegalArgumentException("Bad budget: " + percent + "% " + maxHedges);
+        }
+        tokensPerRequest = percent * TOKEN / 100;
+        maxTokens = maxHedges * TOKEN;
+    }
+
+    void onRequest() {
+        tokens.accumulateAndGet(tokensPerRequest, (current, delta) -> Math.min(current + delta, maxTokens));
+    }
+
+    /**
+     * @return whether a hedged request can be sent
+     */
+    boolean tryAcquire() {
+        long current = tokens.get();
+        while (current >= TOKEN) {
+            if (tokens.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+            current = tokens.get();
+        }
+        return false;
+    }
+}
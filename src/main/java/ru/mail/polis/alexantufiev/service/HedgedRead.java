@@ -0,0 +1,119 @@
+package ru.mail.polis.alexantufiev.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Read from {@code ack} of candidate replicas with speculative retries.
+ * <p>
+ * Only the first {@code ack} candidates are requested. If a replica has not answered within its delay, the next
+ * candidate is requested too when {@link HedgeBudget} allows it, and the first {@code ack} answers are used.
+ * A failed request is replaced by the next candidate at once, without the budget, like a request to all
+ * replicas would be.
+ *
+ * @param <T> type of answer
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class HedgedRead<T> {
+
+    private final List<String> candidates;
+    private final int ack;
+    private final Function<String, CompletableFuture<T>> request;
+    private final ToLongFunction<String> delayNanos;
+    private final HedgeBudget budget;
+    private final ScheduledExecutorService timer;
+    private final Map<String, CompletableFuture<T>> requests = new LinkedHashMap<>();
+    private final List<T> answers = new ArrayList<>();
+    private final CompletableFuture<List<T>> result = new CompletableFuture<>();
+    private int settled;
+
+    /**
+     * @param candidates replicas in the order of preference
+     * @param ack        count of answers which is enough
+     * @param request    sends the request to a replica
+     * @param delayNanos time after which a replica is considered slow
+     * @param budget     budget of hedged requests
+     * @param timer      scheduler of hedged requests
+     */
+    HedgedRead(
+        List<String> candidates,
+        int ack,
+        Function<String, CompletableFuture<T>> request,
+        ToLongFunction<String> delayNanos,
+        HedgeBudget budget,
+        ScheduledExecutorService timer
+    ) {
+        this.candidates = candidates;
+        this.ack = ack;
+        this.request = request;
+        this.delayNanos = delayNanos;
+        this.budget = budget;
+        this.timer = timer;
+    }
+
+    /**
+     * Sends the requests.
+     * <p>
+     * The returned future is completed as soon as {@code ack} answers arrive, or when all the candidates are failed.
+     * In the last case it contains less than {@code ack} answers, so the caller can treat it as a failed quorum.
+     *
+     * @return future with successful answers
+     */
+    synchronized CompletableFuture<List<T>> start() {
+        budget.onRequest();
+        if (candidates.isEmpty()) {
+            result.complete(new ArrayList<>());
+        }
+        while (requests.size() < Math.min(ack, candidates.size())) {
+            sendNext();
+        }
+        return result;
+    }
+
+    /**
+     * @return requests which were sent by replicas
+     */
+    synchronized Map<String, CompletableFuture<T>> getRequests() {
+        return new LinkedHashMap<>(requests);
+    }
+
+    private void sendNext() {
+        String node = candidates.get(requests.size());
+        CompletableFuture<T> future = request.apply(node);
+        requests.put(node, future);
+        if (requests.size() < candidates.size()) {
+            timer.schedule(() -> hedge(future), delayNanos.applyAsLong(node), TimeUnit.NANOSECONDS);
+        }
+        future.whenComplete((answer, throwable) -> onAnswer(answer, throwable));
+    }
+
+    private synchronized void hedge(CompletableFuture<T> slow) {
+        if (!result.isDone() && !slow.isDone() && requests.size() < candidates.size() && budget.tryAcquire()) {
+            sendNext();
+        }
+    }
+
+    private synchronized void onAnswer(T answer, Throwable throwable) {
+        settled++;
+        if (result.isDone()) {
+            return;
+        }
+        if (throwable == null) {
+            answers.add(answer);
+        } else if (requests.size() < candidates.size()) {
+            sendNext();
+        }
+        if (answers.size() >= ack || settled == candidates.size()) {
+            result.complete(new ArrayList<>(answers));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.mail.polis.KVDao;
+import ru.mail.polis.alexantufiev.entity.BytesEntity;
+import ru.mail.polis.alexantufiev.entity.Record;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays writes which were not delivered to unavailable nodes.
+ * <p>
+ * Hints are kept in {@link KVDao}, so they survive a restart of this node. Every {@code periodMillis} the nodes
+ * with hints are checked by {@link Status}, and hints of an available node are read by pages of {@code batchSize}.
+ * A page is sent by one request to the node, or by a few ones if it does not fit in
+ * {@link RpcFrame#MAX_MESSAGE_SIZE}, and the delivered hints are removed in one transaction, except the ones which
+ * are replaced by newer ones in the meantime.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class HintedHandoff {
+
+    private static final Logger logger = LoggerFactory.getLogger(HintedHandoff.class);
+
+    private final KVDao dao;
+    private final Collection<String> nodes;
+    private final Status status;
+    private final Writer writer;
+    private final int batchSize;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Delivers hints to the node by one request.
+     */
+    @FunctionalInterface
+    interface Writer {
+        void write(String node, List<Record> hints) throws Exception;
+    }
+
+    /**
+     * Checks whether the node is available, e.g. with {@code /v0/status}.
+     */
+    @FunctionalInterface
+    interface Status {
+        boolean isAvailable(String node) throws Exception;
+    }
+
+    HintedHandoff(String name, KVDao dao, Collection<String> nodes, Status status, Writer writer, int batchSize) {
+        this.dao = dao;
+        this.nodes = nodes;
+        this.status = status;
+        this.writer = writer;
+        this.batchSize = batchSize;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start(long periodMillis) {
+        executor.scheduleWithFixedDelay(this::replay, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    void addHint(String node, byte[] key, BytesEntity entity) {
+        logger.debug("*** HINT *** NODE='{}' VERSION='{}'", node, entity.getTime());
+        try {
+            dao.addHint(node, key, entity);
+        } catch (RuntimeException e) {
+            logger.error("catch exception in hinted handoff of {}", node, e);
+        }
+    }
+
+    /**
+     * Sends hints of all available nodes, it is called periodically after {@link #start(long)}.
+     */
+    void replay() {
+        for (String node : nodes) {
+            try {
+                replay(node);
+            } catch (Exception e) {
+                logger.debug("*** HINTS ARE NOT DELIVERED *** NODE='{}' MESSAGE='{}'", node, e.getMessage());
+            }
+        }
+    }
+
+    private void replay(String node) throws Exception {
+        List<Record> hints = dao.getHints(node, batchSize);
+        if (hints.isEmpty() || !status.isAvailable(node)) {
+            return;
+        }
+        while (!hints.isEmpty()) {
+            int start = 0;
+            int size = 0;
+            for (int i = 0; i < hints.size(); i++) {
+                int length = Record.getEncodedLength(hints.get(i));
+                if (size + length > RpcFrame.MAX_MESSAGE_SIZE && i > start) {
+                    deliver(node, hints.subList(start, i));
+                    start = i;
+                    size = 0;
+                }
+                size += length;
+            }
+            deliver(node, hints.subList(start, hints.size()));
+            logger.debug("*** HINTS ARE DELIVERED *** NODE='{}' COUNT='{}'", node, hints.size());
+            if (hints.size() < batchSize || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            hints = dao.getHints(node, batchSize);
+        }
+    }
+
+    private void deliver(String node, List<Record> hints) throws Exception {
+        writer.write(node, hints);
+        dao.removeHints(node, hints);
+    }
+}
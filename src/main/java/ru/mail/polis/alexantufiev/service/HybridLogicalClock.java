@@ -0,0 +1,39 @@
+package ru.mail.polis.alexantufiev.service;
+
+import ru.mail.polis.alexantufiev.entity.BytesEntity;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hybrid logical clock which stamps versions of writes.
+ * <p>
+ * A timestamp has the layout of the time of {@link BytesEntity}: milliseconds since epoch in the high bits and
+ * a logical counter in the low {@link BytesEntity#LOGICAL_BITS} bits. Timestamps issued by one clock strictly grow,
+ * and after {@link #update(long)} they are greater than the observed remote timestamp, so causally later writes win
+ * even if the wall clocks of the nodes are skewed.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+public class HybridLogicalClock {
+
+    private final AtomicLong last = new AtomicLong();
+
+    /**
+     * @return new timestamp, greater than all the timestamps issued or observed before
+     */
+    public long now() {
+        long physical = BytesEntity.currentTime();
+        return last.updateAndGet(time -> Math.max(time + 1, physical));
+    }
+
+    /**
+     * Observes a timestamp of another node.
+     *
+     * @param remote timestamp of another node
+     */
+    public void update(long remote) {
+        last.accumulateAndGet(remote, Math::max);
+    }
+}
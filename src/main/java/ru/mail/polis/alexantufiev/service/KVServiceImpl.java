@@ -1,14 +1,14 @@
 package ru.mail.polis.alexantufiev.service;
 
-import one.nio.http.HttpClient;
-import one.nio.http.HttpException;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
 import one.nio.http.HttpServer;
 import one.nio.http.HttpServerConfig;
 import one.nio.http.HttpSession;
 import one.nio.http.Path;
 import one.nio.http.Request;
 import one.nio.http.Response;
-import one.nio.net.ConnectionString;
+import one.nio.net.Socket;
 import one.nio.pool.PoolException;
 import one.nio.server.AcceptorConfig;
 import org.jetbrains.annotations.NotNull;
@@ -16,72 +16,223 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.mail.polis.KVDao;
 import ru.mail.polis.KVService;
-import ru.mail.polis.alexantufiev.dao.NoAccessException;
+import ru.mail.polis.alexantufiev.dao.RecordIterator;
 import ru.mail.polis.alexantufiev.entity.BytesEntity;
+import ru.mail.polis.alexantufiev.entity.Operation;
+import ru.mail.polis.alexantufiev.entity.OperationResult;
+import ru.mail.polis.alexantufiev.entity.Record;
 import ru.mail.polis.alexantufiev.entity.Replica;
+import ru.mail.polis.alexantufiev.entity.ReplicaResponse;
 import ru.mail.polis.alexantufiev.entity.State;
+import ru.mail.polis.alexantufiev.metrics.MetricsRegistry;
+import ru.mail.polis.alexantufiev.metrics.Timer;
 
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 /**
  * The implementation of {@link HttpServer}.
  *
  * @author Aleksey Antufev
- * @version 1.1.0
+ * @version 1.6.0
  * @since 1.0.0 08.10.2018
  */
 public class KVServiceImpl extends HttpServer implements KVService {
 
     private static final String PATH = "/v0/entity";
-    private static final String PATH_WITH_ID_PATTERN = "/v0/entity?id=%s";
+    private static final String ENTITIES_PATH = "/v0/entities";
+    private static final String RPC_PATH = "/v0/rpc";
+    private static final String STATUS_PATH = "/v0/status";
     private static final String NO_REPLICA = "NO_REPLICA: true";
+    private static final String VERSION = "X-Version: ";
+    private static final String REPLICAS = "X-Replicas: ";
+    private static final String DELETED = "X-Deleted: ";
+    private static final int VIRTUAL_NODES = 128;
+    private static final int REPLICA_THREADS = Runtime.getRuntime().availableProcessors() * 4;
+    private static final int WORKER_THREADS = Integer.getInteger(
+        "kv.workers",
+        Runtime.getRuntime().availableProcessors() * 2
+    );
+    private static final int WORKER_QUEUE_SIZE = Integer.getInteger("kv.workers.queue", 1024);
+    private static final int PEER_POOL_SIZE = Integer.getInteger("kv.peer.pool.size", REPLICA_THREADS);
+    private static final int PEER_RPC_CONNECTIONS = Integer.getInteger("kv.peer.rpc.connections", 2);
+    private static final int PEER_TIMEOUT_MILLIS = Integer.getInteger("kv.peer.timeout.ms", 3000);
+    private static final int PEER_CONNECT_TIMEOUT_MILLIS = Integer.getInteger("kv.peer.connect.timeout.ms", 1000);
+    private static final boolean PEER_KEEP_ALIVE = Boolean.parseBoolean(
+        System.getProperty("kv.peer.keepalive", "true")
+    );
+    private static final double HEDGE_PERCENTILE = 0.95;
+    private static final int HEDGE_BUDGET_PERCENT = 5;
+    private static final int MAX_SAVED_HEDGES = 10;
+    private static final long MIN_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long DEFAULT_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int REPAIR_QUEUE_SIZE = 1024;
+    private static final int REPAIRS_PER_SECOND = 1000;
+    private static final int HINTS_BATCH_SIZE = 100;
+    private static final long HINTS_PERIOD_MILLIS = 1000;
+    private static final long PING_PERIOD_MILLIS = 500;
+    private static final int MERKLE_TREE_DEPTH = 10;
+    private static final long ANTI_ENTROPY_PERIOD_MILLIS = 5000;
+    private static final int ACCESS_LOG_SAMPLE = Integer.getInteger("kv.access.log.sample", 0);
+    private static final int ACCESS_LOG_SIZE = Integer.getInteger("kv.access.log.size", 4096);
+    private static final long ACCESS_LOG_PERIOD_MILLIS = 100;
     private static final Logger logger = LoggerFactory.getLogger(KVServiceImpl.class);
 
     @NotNull
     private final KVDao dao;
 
-    private Map<String, HttpClient> nodes;
+    private final ExecutorService replicaExecutor;
+    private final ExecutorService workers;
+    private final HybridLogicalClock clock = new HybridLogicalClock();
+    private final ReadRepair readRepair;
+    private final SingleFlight<String, ReplicaResponse> readFlights = new SingleFlight<>();
+    private final HedgeBudget hedgeBudget = new HedgeBudget(HEDGE_BUDGET_PERCENT, MAX_SAVED_HEDGES);
+    private final ScheduledExecutorService hedgeTimer;
+    private final AccessLog accessLog;
+    private final Map<String, LatencyTracker> latencies = new HashMap<>();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final RequestMetrics requestMetrics = new RequestMetrics(metrics);
+
+    private Map<String, Peer> nodes;
+    private ConsistentHashRing ring;
+    private HintedHandoff hintedHandoff;
+    private FailureDetector failureDetector;
+    private AntiEntropy antiEntropy;
 
     public KVServiceImpl(int port, KVDao dao) throws IOException {
+        this(port, dao, ExecutionMode.POOL);
+    }
+
+    public KVServiceImpl(int port, KVDao dao, @NotNull ExecutionMode mode) throws IOException {
         super(create(port));
         this.dao = dao;
+        dao.registerMetrics(metrics);
+        replicaExecutor = mode.newExecutor("replica-" + port, REPLICA_THREADS, 0);
+        workers = mode.newExecutor("worker-" + port, WORKER_THREADS, WORKER_QUEUE_SIZE);
+        readRepair = new ReadRepair("read-repair-" + port, REPAIR_QUEUE_SIZE, REPAIRS_PER_SECOND);
+        accessLog = new AccessLog("access-log-" + port, ACCESS_LOG_SAMPLE, ACCESS_LOG_SIZE);
+        hedgeTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hedge-" + port);
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public KVServiceImpl(int port, @NotNull Set<String> topology, @NotNull KVDao dao) throws IOException {
-        this(port, dao);
+        this(port, topology, dao, ExecutionMode.POOL);
+    }
+
+    public KVServiceImpl(
+        int port,
+        @NotNull Set<String> topology,
+        @NotNull KVDao dao,
+        @NotNull ExecutionMode mode
+    ) throws IOException {
+        this(port, dao, mode);
         nodes = new HashMap<>(topology.size());
+        String self = null;
         for (String node : topology) {
+            latencies.put(node, new LatencyTracker(
+                HEDGE_PERCENTILE,
+                DEFAULT_HEDGE_DELAY_NANOS,
+                TimeUnit.MILLISECONDS.toNanos(PEER_TIMEOUT_MILLIS)
+            ));
             if (port == new URL(node).getPort()) {
+                self = node;
                 nodes.put(node, null);
             } else {
-                nodes.put(node, new HttpClient(new ConnectionString(node)));
+                Peer peer = new Peer(
+                    node,
+                    PEER_POOL_SIZE,
+                    PEER_RPC_CONNECTIONS,
+                    PEER_TIMEOUT_MILLIS,
+                    PEER_CONNECT_TIMEOUT_MILLIS,
+                    PEER_KEEP_ALIVE
+                );
+                peer.registerMetrics(metrics);
+                nodes.put(node, peer);
             }
         }
+        ring = new ConsistentHashRing(topology, VIRTUAL_NODES);
+        Map<String, Peer> peers = new HashMap<>(nodes);
+        peers.values().removeIf(Objects::isNull);
+        failureDetector = new FailureDetector("failure-detector-" + port, peers.values());
+        hintedHandoff = new HintedHandoff(
+            "hinted-handoff-" + port,
+            dao,
+            peers.keySet(),
+            node -> peers.get(node).get(STATUS_PATH).getStatus() == 200,
+            (node, hints) -> writeToReplica(nodes.get(node), hints),
+            HINTS_BATCH_SIZE
+        );
+        antiEntropy = new AntiEntropy(
+            "anti-entropy-" + port,
+            self,
+            dao,
+            ring,
+            topology.size(),
+            peers,
+            MERKLE_TREE_DEPTH
+        );
     }
 
     @Override
     public synchronized void start() {
+        if (antiEntropy != null) {
+            antiEntropy.start(ANTI_ENTROPY_PERIOD_MILLIS);
+        }
         super.start();
         dao.isAccessible(true);
+        accessLog.start(ACCESS_LOG_PERIOD_MILLIS);
+        if (hintedHandoff != null) {
+            hintedHandoff.start(HINTS_PERIOD_MILLIS);
+            failureDetector.start(PING_PERIOD_MILLIS);
+        }
     }
 
     @Override
     public synchronized void stop() {
         super.stop();
+        workers.shutdown();
+        replicaExecutor.shutdown();
+        hedgeTimer.shutdownNow();
+        readRepair.stop();
+        accessLog.stop();
+        if (hintedHandoff != null) {
+            hintedHandoff.stop();
+            failureDetector.stop();
+        }
+        if (antiEntropy != null) {
+            antiEntropy.stop();
+        }
+        if (nodes != null) {
+            nodes.values().stream().filter(Objects::nonNull).forEach(Peer::close);
+        }
         dao.isAccessible(false);
     }
 
-    @Path("/v0/status")
+    @Path(STATUS_PATH)
     public Response getStatus() throws PoolException {
         if (dao.isAccessible()) {
             return Response.ok("");
@@ -90,16 +241,468 @@ public class KVServiceImpl extends HttpServer implements KVService {
         }
     }
 
+    /**
+     * Statistics of connections to peers, a line per peer: endpoint, count of requests, count of requests
+     * which waited for a connection, total and the longest wait in microseconds, average latency of reads
+     * in microseconds, count of reads in flight and whether the node is considered down.
+     */
+    @Path("/v0/peers")
+    public Response getPeers() {
+        StringBuilder peers = new StringBuilder();
+        if (nodes != null) {
+            for (Peer peer : nodes.values()) {
+                if (peer != null) {
+                    LatencyTracker latency = latencies.get(peer.getEndpoint());
+                    peers.append(peer.getEndpoint())
+                        .append(' ').append(peer.getRequests())
+                        .append(' ').append(peer.getWaits())
+                        .append(' ').append(TimeUnit.NANOSECONDS.toMicros(peer.getWaitNanos()))
+                        .append(' ').append(TimeUnit.NANOSECONDS.toMicros(peer.getMaxWaitNanos()))
+                        .append(' ').append(TimeUnit.NANOSECONDS.toMicros(latency.getAverageNanos()))
+                        .append(' ').append(latency.getInFlight())
+                        .append(' ').append(peer.isDown())
+                        .append('\n');
+                }
+            }
+        }
+        return Response.ok(peers.toString());
+    }
+
+    /**
+     * Metrics of the node in Prometheus text format, quantiles of latencies are computed over the interval
+     * since the previous request of metrics.
+     */
+    @Path("/v0/metrics")
+    public Response getMetrics() {
+        Response response = Response.ok(metrics.scrape());
+        response.addHeader("Content-Type: " + MetricsRegistry.CONTENT_TYPE);
+        return response;
+    }
+
+    @Path(AntiEntropy.HASHES_PATH)
+    public void getHashes(Request request, HttpSession session) {
+        if (request.getMethod() != Request.METHOD_POST || antiEntropy == null) {
+            sendError(session, Response.METHOD_NOT_ALLOWED);
+            return;
+        }
+        String node = request.getHeader(AntiEntropy.NODE);
+        try {
+            int level = Integer.parseInt(request.getParameter("level="));
+            long[] hashes = antiEntropy.getHashes(node, level, AntiEntropy.decodeInts(getBody(request)));
+            sendResponse(session, Response.OK, AntiEntropy.encode(hashes));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            logger.error("BAD MERKLE REQUEST: NODE='{}' MESSAGE='{}'", node, e.getMessage());
+            sendError(session, Response.BAD_REQUEST);
+        }
+    }
+
+    @Path(AntiEntropy.RECORDS_PATH)
+    public void handleRecords(Request request, HttpSession session) {
+        dispatch(session, () -> getRecords(request, session));
+    }
+
+    private void getRecords(Request request, HttpSession session) {
+        if (request.getMethod() != Request.METHOD_POST || antiEntropy == null) {
+            sendError(session, Response.METHOD_NOT_ALLOWED);
+            return;
+        }
+        String node = request.getHeader(AntiEntropy.NODE);
+        try {
+            List<Record> records = new ArrayList<>();
+            boolean isComplete = antiEntropy.getRecords(node, getBody(request), records);
+            Response response = new Response(Response.OK, Record.encode(records));
+            if (!isComplete) {
+                response.addHeader(AntiEntropy.MORE + true);
+            }
+            sendResponse(session, response);
+        } catch (IllegalArgumentException e) {
+            logger.error("BAD MERKLE REQUEST: NODE='{}' MESSAGE='{}'", node, e.getMessage());
+            sendError(session, Response.BAD_REQUEST);
+        } catch (RuntimeException e) {
+            logger.error("catch exception in merkle records method", e);
+            sendError(session, Response.INTERNAL_ERROR);
+        }
+    }
+
+    private static byte[] getBody(Request request) {
+        byte[] body = request.getBody();
+        return body == null ? Response.EMPTY : body;
+    }
+
+    @Override
+    public HttpSession createSession(Socket socket) {
+        return new RpcSession(socket, this, requestMetrics, accessLog);
+    }
+
+    /**
+     * Starts measuring a request to {@link #PATH} before it is dispatched, so the wait for a worker is measured,
+     * and samples it for {@link AccessLog}.
+     */
+    @Override
+    public void handleRequest(Request request, HttpSession session) throws IOException {
+        String uri = request.getURI();
+        if (uri.startsWith(PATH) && (uri.length() == PATH.length() || uri.charAt(PATH.length()) == '?')) {
+            StreamingSession streamingSession = (StreamingSession) session;
+            boolean isLocal = request.getHeader(NO_REPLICA) != null;
+            streamingSession.startTimer(requestMetrics.getTimer(request.getMethod(), isLocal));
+            if (accessLog.isSampled()) {
+                streamingSession.logRequest(request.getMethod(), AccessLog.keyHash(uri), isLocal);
+            }
+        }
+        super.handleRequest(request, session);
+    }
+
+    /**
+     * Switches the connection of a peer to the binary protocol of {@link RpcFrame}.
+     */
+    @Path(RPC_PATH)
+    public void upgrade(Request request, HttpSession session) {
+        String protocol = request.getHeader("Upgrade: ");
+        if (protocol == null || !RpcSession.PROTOCOL.equals(protocol.trim())) {
+            logger.error("BAD UPGRADE: {}", protocol);
+            sendError(session, Response.BAD_REQUEST);
+            return;
+        }
+        try {
+            ((RpcSession) session).upgrade(this::handleFrame);
+        } catch (IOException e) {
+            logger.debug("*** FAILED UPGRADE *** MESSAGE='{}'", e.getMessage());
+            session.close();
+        }
+    }
+
+    /**
+     * Answers a heartbeat at once and runs other requests in {@link #workers}.
+     */
+    private void handleFrame(RpcSession session, RpcFrame frame) {
+        if (frame.getCode() == RpcFrame.PING) {
+            sendFrame(session, new RpcFrame(frame.getId(), RpcFrame.OK));
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            workers.execute(() -> {
+                sendFrame(session, executeFrame(frame));
+                Timer timer = requestMetrics.getLocalTimer(frame.getCode());
+                if (timer != null) {
+                    timer.recordSince(start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("*** REJECT RPC *** ID='{}'", frame.getId());
+            sendFrame(session, new RpcFrame(frame.getId(), RpcFrame.ERROR));
+        }
+    }
+
+    /**
+     * Executes a request of a coordinator in the local DAO.
+     */
+    private RpcFrame executeFrame(RpcFrame frame) {
+        int id = frame.getId();
+        try {
+            switch (frame.getCode()) {
+                case RpcFrame.GET:
+                    ByteIterable stored = dao.getRecord(frame.getPayload());
+                    return new RpcFrame(id, RpcFrame.OK, stored.getBytesUnsafe(), 0, stored.getLength());
+                case RpcFrame.PUT:
+                case RpcFrame.DELETE:
+                    for (Record record : Record.decode(frame.getPayload())) {
+                        if (record.getEntity().isDeleted() != (frame.getCode() == RpcFrame.DELETE)) {
+                            throw new IllegalArgumentException("Wrong tombstone flag");
+                        }
+                        dao.upsert(record.getKey(), record.getEntity());
+                        readFlights.forget(new String(record.getKey()));
+                    }
+                    return new RpcFrame(id, RpcFrame.OK);
+                case RpcFrame.BATCH:
+                    List<OperationResult> results = executeBatch(Operation.decode(frame.getPayload()));
+                    return new RpcFrame(id, RpcFrame.OK, OperationResult.encode(results));
+                default:
+                    throw new IllegalArgumentException("Unknown code: " + frame.getCode());
+            }
+        } catch (NoSuchElementException e) {
+            return new RpcFrame(id, RpcFrame.NOT_FOUND);
+        } catch (IllegalArgumentException e) {
+            logger.error("BAD RPC: {}", e.getMessage());
+            return new RpcFrame(id, RpcFrame.ERROR);
+        } catch (RuntimeException e) {
+            logger.error("catch exception in RPC method", e);
+            return new RpcFrame(id, RpcFrame.ERROR);
+        }
+    }
+
+    private static void sendFrame(RpcSession session, RpcFrame frame) {
+        try {
+            session.sendFrame(frame);
+        } catch (IOException e) {
+            logger.debug("*** FAILED SEND FRAME *** ID='{}' MESSAGE='{}'", frame.getId(), e.getMessage());
+            session.close();
+        }
+    }
+
+    @Path(ENTITIES_PATH)
+    public void handleEntities(Request request, HttpSession session) {
+        dispatch(session, () -> handleRangeOrBatch(request, session));
+    }
+
+    private void handleRangeOrBatch(Request request, HttpSession session) {
+        switch (request.getMethod()) {
+            case Request.METHOD_GET:
+                getRange(request, session);
+                break;
+            case Request.METHOD_POST:
+                handleBatch(request, session);
+                break;
+            default:
+                sendError(session, Response.METHOD_NOT_ALLOWED);
+        }
+    }
+
+    /**
+     * Streams entities of the local DAO with keys from {@code start} inclusive to {@code end} exclusive.
+     */
+    private void getRange(Request request, HttpSession session) {
+        String start = request.getParameter("start=");
+        if (start == null || start.isEmpty()) {
+            logger.error("BAD START: {}", start);
+            sendError(session, Response.BAD_REQUEST);
+            return;
+        }
+        String end = request.getParameter("end=");
+        logger.debug("*** RECEIVE REQUEST : RANGE IN LOCAL DAO *** START='{}' END='{}'", start, end);
+        try {
+            RecordIterator records = dao.range(start.getBytes(), end == null || end.isEmpty() ? null : end.getBytes());
+            ((StreamingSession) session).stream(records, workers);
+        } catch (IOException e) {
+            logger.debug("*** FAILED STREAM RANGE *** START='{}' END='{}' MESSAGE='{}'", start, end, e.getMessage());
+            session.close();
+        } catch (RuntimeException e) {
+            logger.error("catch exception in RANGE method", e);
+            sendError(session, Response.INTERNAL_ERROR);
+        }
+    }
+
+    /**
+     * Executes a batch of operations encoded by {@link Operation#encode}, the results are encoded
+     * by {@link OperationResult#encode} in the order of operations.
+     */
+    private void handleBatch(Request request, HttpSession session) {
+        List<Operation> operations;
+        Optional<Replica> replica;
+        try {
+            operations = Operation.decode(getBody(request));
+            replica = Replica.of(
+                request.getParameter("replicas="),
+                nodes.size(),
+                request.getHeader(NO_REPLICA) != null
+            );
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            logger.error("BAD BATCH: {}", e.getMessage());
+            sendError(session, Response.BAD_REQUEST);
+            return;
+        }
+        if (replica.isPresent()) {
+            coordinateBatch(session, operations, replica.get());
+            return;
+        }
+        logger.debug("*** RECEIVE REQUEST : BATCH IN LOCAL DAO *** COUNT='{}'", operations.size());
+        try {
+            sendResponse(session, Response.OK, OperationResult.encode(executeBatch(operations)));
+        } catch (IllegalArgumentException e) {
+            logger.error("BAD BATCH: {}", e.getMessage());
+            sendError(session, Response.BAD_REQUEST);
+        } catch (RuntimeException e) {
+            logger.error("catch exception in local BATCH method", e);
+            sendError(session, Response.INTERNAL_ERROR);
+        }
+    }
+
+    /**
+     * Executes a batch of a coordinator in the local DAO: values of writes are entities in the binary layout,
+     * all writes are done in one transaction and then all reads in another one.
+     *
+     * @throws IllegalArgumentException if an entity is malformed
+     */
+    private List<OperationResult> executeBatch(List<Operation> operations) {
+        List<Record> writes = new ArrayList<>();
+        List<byte[]> reads = new ArrayList<>();
+        for (Operation operation : operations) {
+            if (operation.getType() == Operation.GET) {
+                reads.add(operation.getKey());
+            } else {
+                writes.add(new Record(operation.getKey(), BytesEntity.decode(operation.getValue())));
+            }
+        }
+        if (!writes.isEmpty()) {
+            dao.upsert(writes);
+        }
+        Iterator<BytesEntity> entities = dao.getEntities(reads).iterator();
+        List<OperationResult> results = new ArrayList<>(operations.size());
+        for (Operation operation : operations) {
+            switch (operation.getType()) {
+                case Operation.GET:
+                    BytesEntity entity = entities.next();
+                    results.add(entity == null ? new OperationResult(404) : new OperationResult(200, entity.encode()));
+                    break;
+                case Operation.PUT:
+                    results.add(new OperationResult(201));
+                    break;
+                default:
+                    results.add(new OperationResult(202));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Sends one sub-batch to every replica with the operations of its keys, and answers each operation
+     * when all sub-batches are done.
+     */
+    private void coordinateBatch(HttpSession session, List<Operation> operations, Replica replica) {
+        int countOfNodes = replica.getCountOfNodes();
+        List<BytesEntity> entities = new ArrayList<>(operations.size());
+        Map<String, List<Integer>> indexesOfNodes = new LinkedHashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            byte type = operation.getType();
+            entities.add(type == Operation.GET
+                ? null
+                : new BytesEntity(
+                    type == Operation.PUT ? operation.getValue() : Response.EMPTY,
+                    clock.now(),
+                    type == Operation.DELETE,
+                    getStoredReplicas(replica)
+                ));
+            for (String node : ring.getNodes(operation.getKey(), countOfNodes)) {
+                indexesOfNodes.computeIfAbsent(node, key -> new ArrayList<>()).add(i);
+            }
+        }
+        List<List<Integer>> indexesOfRequests = new ArrayList<>(indexesOfNodes.size());
+        List<CompletableFuture<List<OperationResult>>> requests = new ArrayList<>(indexesOfNodes.size());
+        for (Map.Entry<String, List<Integer>> indexes : indexesOfNodes.entrySet()) {
+            List<Operation> batch = new ArrayList<>(indexes.getValue().size());
+            for (int index : indexes.getValue()) {
+                BytesEntity entity = entities.get(index);
+                Operation operation = operations.get(index);
+                batch.add(entity == null
+                    ? operation
+                    : new Operation(operation.getType(), operation.getKey(), entity.encode()));
+            }
+            indexesOfRequests.add(indexes.getValue());
+            requests.add(submit("BATCH", () -> sendBatchOrHint(indexes.getKey(), batch)));
+        }
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).whenComplete((ignored, e) -> {
+            for (Operation operation : operations) {
+                if (operation.getType() != Operation.GET) {
+                    readFlights.forget(new String(operation.getKey()));
+                }
+            }
+            int[] acks = new int[operations.size()];
+            ReplicaResponse[] newest = new ReplicaResponse[operations.size()];
+            Arrays.fill(newest, ReplicaResponse.noExist());
+            for (int request = 0; request < requests.size(); request++) {
+                if (requests.get(request).isCompletedExceptionally()) {
+                    continue;
+                }
+                List<OperationResult> results = requests.get(request).join();
+                for (int i = 0; i < results.size(); i++) {
+                    int index = indexesOfRequests.get(request).get(i);
+                    try {
+                        newest[index] = newest[index].newest(toReplicaResponse(results.get(i)));
+                        acks[index]++;
+                    } catch (IOException | IllegalArgumentException exception) {
+                        logger.error("catch exception in BATCH method", exception);
+                    }
+                }
+            }
+            List<OperationResult> results = new ArrayList<>(operations.size());
+            for (int i = 0; i < operations.size(); i++) {
+                results.add(toOperationResult(operations.get(i).getType(), acks[i], replica, newest[i]));
+            }
+            logger.debug("*** SEND FINAL RESPONSE : BATCH *** COUNT='{}'", results.size());
+            sendResponse(session, Response.OK, OperationResult.encode(results));
+        });
+    }
+
+    private List<OperationResult> sendBatchOrHint(String node, List<Operation> batch) throws Exception {
+        Peer client = nodes.get(node);
+        if (client == null) {
+            return executeBatch(batch);
+        }
+        try {
+            RpcFrame response = client.invoke(RpcFrame.BATCH, Operation.encode(batch));
+            checkStatus(response);
+            List<OperationResult> results = OperationResult.decode(response.getPayload());
+            if (results.size() != batch.size()) {
+                throw new IOException("WRONG COUNT OF RESULTS: " + results.size());
+            }
+            return results;
+        } catch (IOException | PoolException e) {
+            for (Operation operation : batch) {
+                if (operation.getType() != Operation.GET) {
+                    hintedHandoff.addHint(node, operation.getKey(), BytesEntity.decode(operation.getValue()));
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @throws IOException if the status is unexpected
+     */
+    private ReplicaResponse toReplicaResponse(OperationResult result) throws IOException {
+        switch (result.getStatus()) {
+            case 200:
+                BytesEntity entity = BytesEntity.decode(result.getValue());
+                clock.update(entity.getTime());
+                return entity.isDeleted()
+                    ? ReplicaResponse.deleted(entity.getTime(), entity.getReplicas())
+                    : ReplicaResponse.exist(entity.getBytes(), entity.getTime(), entity.getReplicas());
+            case 201:
+            case 202:
+            case 404:
+                return ReplicaResponse.noExist();
+            default:
+                throw new IOException("WRONG STATUS: " + result.getStatus());
+        }
+    }
+
+    private static OperationResult toOperationResult(byte type, int acks, Replica replica, ReplicaResponse newest) {
+        if (acks < replica.getCountRequests()) {
+            return new OperationResult(504);
+        }
+        switch (type) {
+            case Operation.GET:
+                return newest.getState() == State.EXIST
+                    ? new OperationResult(200, newest.getBytes())
+                    : new OperationResult(404);
+            case Operation.PUT:
+                return new OperationResult(201);
+            default:
+                return new OperationResult(202);
+        }
+    }
+
     @Path(PATH)
     public void handleDefault(Request request, HttpSession session) {
-        logger.debug(
-            "*** HANDLE REQUEST *** METHOD='{}'\n PATH='{}'\n QUERY='{}'\n HEADERS='{}'\n BODY='{}'\n ",
-            request.getMethod(),
-            request.getPath(),
-            request.getQueryString(),
-            Arrays.toString(request.getHeaders()),
-            Arrays.toString(request.getBody())
-        );
+        dispatch(session, () -> handleEntity(request, session));
+    }
+
+    /**
+     * Runs the handler in {@link #workers}, so storage and requests to replicas do not block selector threads.
+     * The request is rejected with 503 if the queue of workers is full.
+     */
+    private void dispatch(HttpSession session, Runnable handler) {
+        try {
+            workers.execute(handler);
+        } catch (RejectedExecutionException e) {
+            logger.debug("*** REJECT REQUEST *** STATUS='{}'", Response.SERVICE_UNAVAILABLE);
+            sendError(session, Response.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private void handleEntity(Request request, HttpSession session) {
+        logger.debug("*** HANDLE REQUEST *** METHOD='{}' URI='{}'", request.getMethod(), request.getURI());
         String path = request.getPath();
         if (!PATH.equals(path)) {
             logger.error("BAD PATH: {}", path);
@@ -136,7 +739,7 @@ public class KVServiceImpl extends HttpServer implements KVService {
                 putEntity(request, session, id, optionalReplica);
                 break;
             case Request.METHOD_DELETE:
-                deleteEntity(session, id, optionalReplica);
+                deleteEntity(request, session, id, optionalReplica);
                 break;
             default:
                 sendError(session, Response.METHOD_NOT_ALLOWED);
@@ -146,169 +749,437 @@ public class KVServiceImpl extends HttpServer implements KVService {
     private void getEntity(HttpSession session, String id, Optional<Replica> replica) {
         if (!replica.isPresent()) {
             logger.debug("*** RECEIVE REQUEST : GET IN LOCAL DAO *** ID='{}'", id);
-            executeAndSendResponse(() -> dao.get(id.getBytes()), session, Response.OK);
+            getFromLocalDao(session, id);
             return;
         }
-        int countOfExpectedNodes = replica.get().getCountOfNodes();
-        byte[] bytes = null;
-        List<State> states = new ArrayList<>(nodes.size());
-        for (Map.Entry<String, HttpClient> entry : nodes.entrySet()) {
-            if (countOfExpectedNodes > 0) {
-                try {
-                    HttpClient value = entry.getValue();
-                    if (value == null) {
-                        BytesEntity entity = dao.getEntity(id.getBytes());
-                        boolean deleted = entity.isDeleted();
-                        logger.debug("*** SEND REQUEST : GET IN DAO *** STATUS_DELETED='{}' ID='{}'", deleted, id);
-                        if (deleted) {
-                            states.add(State.DELETED);
-                        } else {
-                            states.add(State.EXIST);
-                            bytes = entity.getBytes();
-                        }
-                    } else {
-                        logger.debug("*** SEND REQUEST : GET IN DAO *** ID='{}'", id);
-                        Response response = value.get(String.format(PATH_WITH_ID_PATTERN, id), NO_REPLICA);
-                        int status = response.getStatus();
-                        switch (status) {
-                            case 200:
-                                states.add(State.EXIST);
-                                bytes = response.getBody();
-                                break;
-                            case 404:
-                                states.add(State.NO_EXIST);
-                                break;
-                            case 504:
-                                states.add(State.DELETED);
-                                break;
-                            default:
-                                logger.error("WRONG STATUS: {}", status);
-                                break;
-                        }
-                    }
-                } catch (NoSuchElementException e) {
-                    states.add(State.NO_EXIST);
-                } catch (IOException | HttpException | InterruptedException | NoAccessException | PoolException e) {
-                    logger.error("catch exception in get method", e);
-                }
+        readFlights.execute(id, replica.get(), () -> readFromReplicas(id, replica.get())).whenComplete((newest, e) -> {
+            if (accessLog.isEnabled()) {
+                ((StreamingSession) session).setReplicas(
+                    e != null || newest == null ? AccessLog.UNKNOWN : replica.get().getCountRequests(),
+                    replica.get().getCountOfNodes()
+                );
             }
-            countOfExpectedNodes--;
-        }
-        int countOfRespondedNodes = 0;
-        if (states.size() < replica.get().getCountRequests()) {
-            logger.debug("*** SEND FINAL RESPONSE *** STATUS='{}'", Response.GATEWAY_TIMEOUT);
-            sendError(session, Response.GATEWAY_TIMEOUT);
-        }
-        for (State state : states) {
-            if (state == State.DELETED) {
-                logger.debug("*** SEND FINAL RESPONSE *** STATUS='{}'", Response.NOT_FOUND);
-                sendError(session, Response.NOT_FOUND);
+            if (e != null || newest == null) {
+                logger.debug("*** SEND FINAL RESPONSE *** STATUS='{}'", Response.GATEWAY_TIMEOUT);
+                sendError(session, Response.GATEWAY_TIMEOUT);
+            } else {
+                sendNewestResponse(session, newest);
+            }
+        });
+    }
+
+    /**
+     * Reads the entity from replicas, concurrent reads of the key with the same replicas share this read.
+     * Only {@code ack} replicas are requested, a replica which is slower than usual is hedged by the next one.
+     *
+     * @return future of the newest answer, or of {@code null} if less replicas than required have answered
+     */
+    private CompletableFuture<ReplicaResponse> readFromReplicas(String id, Replica replica) {
+        int countRequests = replica.getCountRequests();
+        HedgedRead<ReplicaResponse> read = new HedgedRead<>(
+            getFastestNodes(id, replica),
+            countRequests,
+            node -> getFromReplica(node, id),
+            this::getHedgeDelay,
+            hedgeBudget,
+            hedgeTimer
+        );
+        return read.start().thenApply(responses -> {
+            Map<String, CompletableFuture<ReplicaResponse>> requests = read.getRequests();
+            requests.values().forEach(future -> future.cancel(false));
+            if (responses.size() < countRequests) {
+                return null;
+            }
+            ReplicaResponse newest = ReplicaResponse.noExist();
+            for (ReplicaResponse response : responses) {
+                newest = newest.newest(response);
+            }
+            repairReplicas(id, requests, newest);
+            return newest;
+        });
+    }
+
+    /**
+     * A replica is hedged when it is slower than {@link #HEDGE_PERCENTILE} of its recent reads.
+     */
+    private long getHedgeDelay(String node) {
+        long delay = latencies.get(node).getPercentileNanos(DEFAULT_HEDGE_DELAY_NANOS);
+        return Math.max(delay, MIN_HEDGE_DELAY_NANOS);
+    }
+
+    /**
+     * Answers with the value of the stored record, the value is written from the record without a copy.
+     * A tombstone is answered with {@code 404} and its version, which is told from an absent key
+     * by the {@code X-Deleted} header.
+     */
+    private void getFromLocalDao(HttpSession session, String id) {
+        try {
+            ByteIterable record = dao.getRecord(id.getBytes());
+            if (BytesEntity.isDeleted(record)) {
+                Response response = new Response(Response.NOT_FOUND, Response.EMPTY);
+                response.addHeader(VERSION + BytesEntity.getTime(record));
+                response.addHeader(REPLICAS + BytesEntity.getReplicas(record));
+                response.addHeader(DELETED + true);
+                sendResponse(session, response);
                 return;
             }
-            if (state == State.EXIST) {
-                countOfRespondedNodes++;
+            Response response = new Response(Response.OK);
+            response.addHeader(VERSION + BytesEntity.getTime(record));
+            response.addHeader(REPLICAS + BytesEntity.getReplicas(record));
+            sendValue(
+                session,
+                response,
+                record.getBytesUnsafe(),
+                BytesEntity.HEADER_LENGTH,
+                record.getLength() - BytesEntity.HEADER_LENGTH
+            );
+        } catch (NoSuchElementException e) {
+            sendError(session, Response.NOT_FOUND);
+        } catch (RuntimeException e) {
+            logger.error("catch exception in local GET method", e);
+            sendError(session, Response.INTERNAL_ERROR);
+        }
+    }
+
+    private CompletableFuture<ReplicaResponse> getFromReplica(String node, String id) {
+        Peer client = nodes.get(node);
+        return submit("GET", () -> {
+            LatencyTracker latency = latencies.get(node);
+            latency.begin();
+            long start = System.nanoTime();
+            try {
+                ReplicaResponse response = getFromReplica(client, id);
+                latency.end(System.nanoTime() - start);
+                return response;
+            } catch (Exception e) {
+                latency.fail();
+                throw e;
+            }
+        });
+    }
+
+    private ReplicaResponse getFromReplica(Peer client, String id) throws Exception {
+        if (client == null) {
+            try {
+                ByteIterable record = dao.getRecord(id.getBytes());
+                logger.debug("*** SEND REQUEST : GET IN DAO *** ID='{}'", id);
+                return fromRecord(record);
+            } catch (NoSuchElementException e) {
+                return ReplicaResponse.noExist();
             }
         }
-        if (states.contains(State.NO_EXIST)) {
-            if (countOfRespondedNodes == replica.get().getCountRequests()) {
-                logger.debug("*** SEND FINAL RESPONSE *** STATUS='{}'", Response.OK);
-                sendResponse(session, Response.OK, bytes);
-            } else {
-                logger.debug("*** SEND FINAL RESPONSE *** STATUS='{}'", Response.NOT_FOUND);
-                sendError(session, Response.NOT_FOUND);
+        logger.debug("*** SEND REQUEST : GET IN DAO *** ID='{}'", id);
+        RpcFrame response = client.invoke(RpcFrame.GET, id.getBytes());
+        if (response.getCode() == RpcFrame.NOT_FOUND) {
+            return ReplicaResponse.noExist();
+        }
+        checkStatus(response);
+        ReplicaResponse replicaResponse;
+        try {
+            replicaResponse = fromRecord(new ArrayByteIterable(response.getPayload()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("BAD ENTITY IN RESPONSE", e);
+        }
+        clock.update(replicaResponse.getTime());
+        return replicaResponse;
+    }
+
+    /**
+     * Answer of a replica with the value which is a slice of the record, so the value is not copied.
+     *
+     * @param record record in the binary layout of {@link BytesEntity}
+     * @throws IllegalArgumentException if the record has unknown layout
+     */
+    private static ReplicaResponse fromRecord(ByteIterable record) {
+        long time = BytesEntity.getTime(record);
+        int replicas = BytesEntity.getReplicas(record);
+        if (BytesEntity.isDeleted(record)) {
+            return ReplicaResponse.deleted(time, replicas);
+        }
+        return ReplicaResponse.exist(
+            record.getBytesUnsafe(),
+            BytesEntity.HEADER_LENGTH,
+            record.getLength() - BytesEntity.HEADER_LENGTH,
+            time,
+            replicas
+        );
+    }
+
+    private void sendNewestResponse(HttpSession session, ReplicaResponse newest) {
+        if (newest.getState() == State.EXIST) {
+            clock.update(newest.getTime());
+            logger.debug("*** SEND FINAL RESPONSE *** STATUS='{}' VERSION='{}'", Response.OK, newest.getTime());
+            sendValue(session, new Response(Response.OK), newest.getArray(), newest.getOffset(), newest.getLength());
+        } else {
+            logger.debug("*** SEND FINAL RESPONSE *** STATUS='{}'", Response.NOT_FOUND);
+            sendError(session, Response.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Pushes the newest entity to the replicas which answered with an older one or have not found it.
+     */
+    private void repairReplicas(
+        String id,
+        Map<String, CompletableFuture<ReplicaResponse>> requests,
+        ReplicaResponse newest
+    ) {
+        if (newest.getState() == State.NO_EXIST) {
+            return;
+        }
+        BytesEntity entity = new BytesEntity(
+            newest.getBytes(),
+            newest.getTime(),
+            newest.getState() == State.DELETED,
+            newest.getReplicas()
+        );
+        for (Map.Entry<String, CompletableFuture<ReplicaResponse>> request : requests.entrySet()) {
+            CompletableFuture<ReplicaResponse> future = request.getValue();
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                continue;
+            }
+            ReplicaResponse response = future.join();
+            if (response.getState() == State.NO_EXIST || response.getTime() < newest.getTime()) {
+                String node = request.getKey();
+                logger.debug("*** READ REPAIR *** NODE='{}' ID='{}' VERSION='{}'", node, id, newest.getTime());
+                readRepair.submit(() -> {
+                    try {
+                        writeToReplica(nodes.get(node), id, entity);
+                    } catch (Exception e) {
+                        logger.error("catch exception in read repair of {}", node, e);
+                    }
+                });
             }
         }
-        logger.debug("*** SEND FINAL RESPONSE *** STATUS='{}'", Response.OK);
-        sendResponse(session, Response.OK, bytes);
+    }
+
+    /**
+     * Reads version of the write from the request of coordinator, or stamps a new one for a request without it.
+     *
+     * @throws NumberFormatException if the version is malformed
+     */
+    private long getVersion(Request request) {
+        String version = request.getHeader(VERSION);
+        if (version == null) {
+            return clock.now();
+        }
+        long time = Long.parseLong(version.trim());
+        clock.update(time);
+        return time;
+    }
+
+    /**
+     * Reads count of replicas of the entity, {@code 0} means all nodes.
+     *
+     * @throws NumberFormatException if the count is malformed
+     */
+    /**
+     * @return count of replicas which a record keeps, {@code 0} if the write is replicated to all nodes
+     */
+    private int getStoredReplicas(Replica replica) {
+        return replica.getCountOfNodes() == nodes.size() ? 0 : replica.getCountOfNodes();
+    }
+
+    private static int getReplicas(Request request) {
+        String replicas = request.getHeader(REPLICAS);
+        return replicas == null ? 0 : Integer.parseInt(replicas.trim());
     }
 
     private void putEntity(Request request, HttpSession session, String id, Optional<Replica> replica) {
         if (!replica.isPresent()) {
-                logger.debug("*** RECEIVE REQUEST : INSERT INTO LOCAL DAO *** ID='{}'", id);
-                executeAndSendResponse(() -> dao.upsert(id.getBytes(), request.getBody()), session, Response.CREATED);
-                return;
-        }
-        int countOfRespondedNodes = 0;
-        int countOfExpectedNodes = replica.get().getCountOfNodes();
-        for (Map.Entry<String, HttpClient> entry : nodes.entrySet()) {
-            if (countOfExpectedNodes > 0) {
-                try {
-                    HttpClient value = entry.getValue();
-                    if (value == null) {
-                            logger.debug("*** INSERT INTO LOCAL DAO *** ID='{}'", id);
-                            dao.upsert(id.getBytes(), request.getBody());
-                            countOfRespondedNodes++;
-                    } else {
-                            logger.debug("*** SEND REQUEST : INSERT DAO *** ID='{}'", id);
-                            Response response = value.put(
-                                String.format(PATH_WITH_ID_PATTERN, id),
-                                request.getBody(),
-                                NO_REPLICA
-                            );
-                            int status = response.getStatus();
-                            if (status == 201) {
-                                countOfRespondedNodes++;
-                            } else {
-                                logger.error("WRONG STATUS: {}", status);
-                            }
-                        }
-                } catch (IOException | InterruptedException | HttpException | PoolException | NoAccessException e) {
-                    logger.error("catch exception in PUT method", e);
-                }
+            logger.debug("*** RECEIVE REQUEST : INSERT INTO LOCAL DAO *** ID='{}'", id);
+            try {
+                BytesEntity entity = new BytesEntity(
+                    request.getBody(),
+                    getVersion(request),
+                    false,
+                    getReplicas(request)
+                );
+                executeAndSendResponse(() -> {
+                    dao.upsert(id.getBytes(), entity);
+                    readFlights.forget(id);
+                }, session, Response.CREATED);
+            } catch (IllegalArgumentException e) {
+                logger.error("BAD VERSION: {} {}", request.getHeader(VERSION), request.getHeader(REPLICAS));
+                sendError(session, Response.BAD_REQUEST);
             }
-            countOfExpectedNodes--;
+            return;
         }
-        if (countOfRespondedNodes >= replica.get().getCountRequests()) {
-            logger.debug("*** SEND FINAL RESPONSE *** STATUS='{}'", Response.CREATED);
-            sendResponse(session, Response.CREATED);
-        } else {
-            logger.debug("*** SEND FINAl RESPONSE *** STATUS='{}'", Response.GATEWAY_TIMEOUT);
-            sendError(session, Response.GATEWAY_TIMEOUT);
+        if (request.getBody().length > RpcFrame.MAX_VALUE_SIZE) {
+            logger.debug("*** TOO BIG VALUE *** ID='{}' LENGTH='{}'", id, request.getBody().length);
+            sendError(session, Response.REQUEST_ENTITY_TOO_LARGE);
+            return;
         }
+        BytesEntity entity = new BytesEntity(request.getBody(), clock.now(), false, getStoredReplicas(replica.get()));
+        List<CompletableFuture<Void>> futures = new ArrayList<>(replica.get().getCountOfNodes());
+        for (String node : getReplicaNodes(id, replica.get())) {
+            futures.add(submit("PUT", () -> {
+                writeToReplicaOrHint(node, id, entity);
+                return null;
+            }));
+        }
+        sendWriteResponse(session, id, futures, replica.get().getCountRequests(), Response.CREATED);
     }
 
-    private void deleteEntity(HttpSession session, String id, Optional<Replica> replica) {
+    private void deleteEntity(Request request, HttpSession session, String id, Optional<Replica> replica) {
         if (!replica.isPresent()) {
             logger.debug("*** RECEIVE REQUEST : DELETE IN LOCAL DAO *** ID='{}'", id);
-            executeAndSendResponse(() -> dao.remove(id.getBytes()), session, Response.ACCEPTED);
+            try {
+                BytesEntity entity = new BytesEntity(
+                    Response.EMPTY,
+                    getVersion(request),
+                    true,
+                    getReplicas(request)
+                );
+                executeAndSendResponse(() -> {
+                    dao.upsert(id.getBytes(), entity);
+                    readFlights.forget(id);
+                }, session, Response.ACCEPTED);
+            } catch (IllegalArgumentException e) {
+                logger.error("BAD VERSION: {} {}", request.getHeader(VERSION), request.getHeader(REPLICAS));
+                sendError(session, Response.BAD_REQUEST);
+            }
             return;
         }
-        int countOfRespondedNodes = 0;
-        int countOfExpectedNodes = replica.get().getCountOfNodes();
-        for (Map.Entry<String, HttpClient> entry : nodes.entrySet()) {
-            if (countOfExpectedNodes > 0) {
-                try {
-                    HttpClient value = entry.getValue();
-                    if (value == null) {
-                        logger.debug("*** DELETE IN LOCAL DAO *** ID='{}'", id);
-                        dao.remove(id.getBytes());
-                        countOfRespondedNodes++;
-                    } else {
-                        logger.debug("*** SEND REQUEST : DELETE IN DAO *** ID='{}'", id);
-                        Response response = value.delete(String.format(PATH_WITH_ID_PATTERN, id), NO_REPLICA);
-                        int status = response.getStatus();
-                        if (status == 202) {
-                            countOfRespondedNodes++;
-                        } else {
-                            logger.error("WRONG STATUS: {}", status);
-                        }
-                    }
-                } catch (HttpException | IOException | InterruptedException | NoAccessException | PoolException e) {
-                    logger.error("catch exception in DELETE method", e);
-                } catch (NoSuchElementException e) {
-                    countOfRespondedNodes++;
-                }
+        BytesEntity entity = new BytesEntity(Response.EMPTY, clock.now(), true, getStoredReplicas(replica.get()));
+        List<CompletableFuture<Void>> futures = new ArrayList<>(replica.get().getCountOfNodes());
+        for (String node : getReplicaNodes(id, replica.get())) {
+            futures.add(submit("DELETE", () -> {
+                writeToReplicaOrHint(node, id, entity);
+                return null;
+            }));
+        }
+        sendWriteResponse(session, id, futures, replica.get().getCountRequests(), Response.ACCEPTED);
+    }
+
+    /**
+     * Answers the write when {@code countRequests} replicas have answered, the read in flight of the entity
+     * is forgotten before the answer, so a read which comes after it does not get the old value.
+     */
+    private void sendWriteResponse(
+        HttpSession session,
+        String id,
+        List<CompletableFuture<Void>> futures,
+        int countRequests,
+        String status
+    ) {
+        readFlights.forgetAfter(id, FanOut.collect(futures, countRequests)).thenAccept(responses -> {
+            if (accessLog.isEnabled()) {
+                ((StreamingSession) session).setReplicas(responses.size(), futures.size());
+            }
+            if (responses.size() >= countRequests) {
+                logger.debug("*** SEND FINAL RESPONSE *** STATUS='{}'", status);
+                sendResponse(session, status);
+            } else {
+                logger.debug("*** SEND FINAL RESPONSE *** STATUS='{}'", Response.GATEWAY_TIMEOUT);
+                sendError(session, Response.GATEWAY_TIMEOUT);
+            }
+        });
+    }
+
+    /**
+     * Writes the entity to a replica, the write is remembered for hinted handoff if the node is unavailable.
+     */
+    private void writeToReplicaOrHint(String node, String id, BytesEntity entity) throws Exception {
+        Peer client = nodes.get(node);
+        try {
+            writeToReplica(client, id, entity);
+        } catch (IOException | PoolException e) {
+            if (client != null) {
+                hintedHandoff.addHint(node, id.getBytes(), entity);
             }
-            countOfExpectedNodes--;
+            throw e;
         }
+    }
 
-        if (countOfRespondedNodes >= replica.get().getCountRequests()) {
-            logger.debug("*** SEND FINAl RESPONSE *** STATUS='{}'", Response.ACCEPTED);
-            sendResponse(session, Response.ACCEPTED);
+    /**
+     * Writes the entity with its version to a replica, the local DAO is used if {@code client} is {@code null}.
+     */
+    private void writeToReplica(Peer client, String id, BytesEntity entity) throws Exception {
+        if (client == null) {
+            logger.debug("*** WRITE INTO LOCAL DAO *** DELETED='{}' ID='{}'", entity.isDeleted(), id);
+            dao.upsert(id.getBytes(), entity);
         } else {
-            logger.debug("*** SEND FINAl RESPONSE *** STATUS='{}'", Response.GATEWAY_TIMEOUT);
-            sendError(session, Response.GATEWAY_TIMEOUT);
+            logger.debug("*** SEND REQUEST : WRITE IN DAO *** DELETED='{}' ID='{}'", entity.isDeleted(), id);
+            RpcFrame response = client.invoke(
+                entity.isDeleted() ? RpcFrame.DELETE : RpcFrame.PUT,
+                Record.encode(Collections.singletonList(new Record(id.getBytes(), entity)))
+            );
+            checkStatus(response);
+        }
+    }
+
+    /**
+     * Writes records with their versions to a replica by a {@link RpcFrame#PUT} frame of writes and
+     * a {@link RpcFrame#DELETE} frame of tombstones.
+     */
+    private static void writeToReplica(Peer client, List<Record> records) throws Exception {
+        List<Record> writes = new ArrayList<>(records.size());
+        List<Record> tombstones = new ArrayList<>();
+        for (Record record : records) {
+            (record.getEntity().isDeleted() ? tombstones : writes).add(record);
+        }
+        logger.debug("*** SEND REQUEST : WRITE IN DAO *** WRITES='{}' TOMBSTONES='{}'",
+            writes.size(), tombstones.size());
+        if (!writes.isEmpty()) {
+            checkStatus(client.invoke(RpcFrame.PUT, Record.encode(writes)));
+        }
+        if (!tombstones.isEmpty()) {
+            checkStatus(client.invoke(RpcFrame.DELETE, Record.encode(tombstones)));
+        }
+    }
+
+    private static void checkStatus(RpcFrame response) throws IOException {
+        if (response.getCode() != RpcFrame.OK) {
+            throw new IOException("WRONG STATUS: " + response.getCode());
+        }
+    }
+
+    private List<String> getReplicaNodes(String id, Replica replica) {
+        return ring.getNodes(id.getBytes(), replica.getCountOfNodes());
+    }
+
+    /**
+     * Replicas of the key from the fastest to the slowest one by {@link LatencyTracker#getScore()}, they are
+     * ordered only if some of them are not requested.
+     */
+    private List<String> getFastestNodes(String id, Replica replica) {
+        List<String> replicaNodes = getReplicaNodes(id, replica);
+        if (replica.getCountRequests() < replicaNodes.size()) {
+            replicaNodes = new ArrayList<>(replicaNodes);
+            Map<String, Double> scores = new HashMap<>(replicaNodes.size());
+            for (String node : replicaNodes) {
+                scores.put(node, latencies.get(node).getScore());
+            }
+            replicaNodes.sort(Comparator.comparing(scores::get));
+        }
+        return replicaNodes;
+    }
+
+    /**
+     * Runs request to a replica in {@link #replicaExecutor}, so all replicas are requested at the same time.
+     */
+    private <T> CompletableFuture<T> submit(String method, Callable<T> request) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            replicaExecutor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(request.call());
+                } catch (Exception e) {
+                    logger.error("catch exception in {} method", method, e);
+                    requestMetrics.onReplicaError(e);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.error("catch exception in {} method", method, e);
+            requestMetrics.onReplicaError(e);
+            future.completeExceptionally(e);
         }
+        return future;
     }
 
     protected static void executeAndSendResponse(Runnable runnable, HttpSession session, String status) {
@@ -318,9 +1189,8 @@ public class KVServiceImpl extends HttpServer implements KVService {
         } catch (NoSuchElementException exception) {
             sendError(session, Response.NOT_FOUND);
         } catch (RuntimeException exception) {
-            logger.debug("*** FAILED EXECUTE AND SEND RESPONSE *** STATUS='{}' MESSAGE='{}' with exception={}", status,
-                "EMPTY"
-            , exception);
+            logger.error("catch exception in {} response", status, exception);
+            sendError(session, Response.INTERNAL_ERROR);
         }
     }
 
@@ -330,20 +1200,27 @@ public class KVServiceImpl extends HttpServer implements KVService {
         } catch (NoSuchElementException exception) {
             sendError(session, Response.NOT_FOUND);
         } catch (RuntimeException exception) {
-            logger.debug("*** FAILED EXECUTE AND SEND RESPONSE *** STATUS='{}' MESSAGE='{}' with exception={}", status,
-                "EMPTY"
-            , exception);
+            logger.error("catch exception in {} response", status, exception);
+            sendError(session, Response.INTERNAL_ERROR);
         }
     }
 
     protected static void sendResponse(@NotNull HttpSession session, Response response) {
         try {
-            logger.debug("*** SEND RESPONSE *** STATUS='{}' BYTES='{}'", response.getStatus(), Arrays.toString(response.getBody()));
+            if (logger.isDebugEnabled()) {
+                logger.debug("*** SEND RESPONSE *** STATUS='{}'", response.getStatus());
+            }
             session.sendResponse(response);
         } catch (IOException e) {
-            logger.debug("*** FAILED SEND RESPONSE *** STATUS='{}' MESSAGE='{}' with exception={}", response.getStatus(),
-                Arrays.toString(response.getBody())
-            , e);
+            logger.debug("*** FAILED SEND RESPONSE *** STATUS='{}' MESSAGE='{}'", response.getStatus(), e.getMessage());
+        }
+    }
+
+    private static void sendValue(HttpSession session, Response response, byte[] bytes, int offset, int length) {
+        try {
+            ((StreamingSession) session).sendValue(response, bytes, offset, length);
+        } catch (IOException e) {
+            logger.debug("*** FAILED SEND RESPONSE *** STATUS='{}' MESSAGE='{}'", response.getStatus(), e.getMessage());
         }
     }
 
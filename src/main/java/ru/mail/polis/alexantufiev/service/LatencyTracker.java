@@ -0,0 +1,113 @@
+package ru.mail.polis.alexantufiev.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recent latencies of a node and count of its requests in flight.
+ * <p>
+ * The last {@link #SAMPLES} latencies are kept in a ring, the percentile is recomputed every
+ * {@link #RECOMPUTE_PERIOD} samples, so it follows the node when it becomes slower or faster.
+ * The exponentially weighted moving average of latencies and the count of requests in flight make
+ * the {@link #getScore() score} of the node, like dynamic snitching and C3 rank replicas: a node which is slow
+ * or has a queue of requests is asked last. The average starts from a prior latency, so a node without samples
+ * is not the fastest one, and a failed request counts as a request with the failure latency, so a node which
+ * only fails is asked last too.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class LatencyTracker {
+
+    private static final int SAMPLES = 256;
+    private static final int RECOMPUTE_PERIOD = 32;
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final double percentile;
+    private final long failureNanos;
+    private final long[] samples = new long[SAMPLES];
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private long count;
+    private volatile long percentileNanos = -1;
+    private volatile double averageNanos;
+
+    /**
+     * @param percentile   percentile from {@code 0} exclusive to {@code 1} inclusive
+     * @param priorNanos   latency of a node without samples
+     * @param failureNanos latency which is recorded into the average for a failed request
+     */
+    LatencyTracker(double percentile, long priorNanos, long failureNanos) {
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("Bad percentile: " + percentile);
+        }
+        if (priorNanos <= 0 || failureNanos <= 0) {
+            throw new IllegalArgumentException("Bad latency: " + priorNanos + " " + failureNanos);
+        }
+        this.percentile = percentile;
+        this.failureNanos = failureNanos;
+        averageNanos = priorNanos;
+    }
+
+    /**
+     * Must be called when a request to the node is sent and followed by {@link #end} or {@link #fail}.
+     */
+    void begin() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Ends the request which has failed, only the average is moved to the failure latency.
+     */
+    void fail() {
+        inFlight.decrementAndGet();
+        recordAverage(failureNanos);
+    }
+
+    /**
+     * Ends the request which has been answered.
+     */
+    void end(long nanos) {
+        inFlight.decrementAndGet();
+        record(nanos);
+    }
+
+    private synchronized void recordAverage(long nanos) {
+        averageNanos += EWMA_WEIGHT * (nanos - averageNanos);
+    }
+
+    private synchronized void record(long nanos) {
+        recordAverage(nanos);
+        samples[(int) (count % SAMPLES)] = nanos;
+        count++;
+        if (count < RECOMPUTE_PERIOD || count % RECOMPUTE_PERIOD == 0) {
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, SAMPLES));
+            Arrays.sort(sorted);
+            percentileNanos = sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+        }
+    }
+
+    /**
+     * @return the percentile of recent latencies, or {@code defaultNanos} if there are no samples yet
+     */
+    long getPercentileNanos(long defaultNanos) {
+        long nanos = percentileNanos;
+        return nanos < 0 ? defaultNanos : nanos;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    long getAverageNanos() {
+        return (long) averageNanos;
+    }
+
+    /**
+     * @return expected time of a new request: the average latency for every request in the queue and for this one,
+     *     the average is at least a nanosecond, so requests in flight are counted for a node with zero latency
+     */
+    double getScore() {
+        return Math.max(averageNanos, 1) * (1 + inFlight.get());
+    }
+}
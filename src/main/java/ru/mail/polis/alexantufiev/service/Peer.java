@@ -0,0 +1,251 @@
+package ru.mail.polis.alexantufiev.service;
+
+import one.nio.http.HttpClient;
+import one.nio.http.HttpException;
+import one.nio.http.Response;
+import one.nio.net.ConnectionString;
+import one.nio.pool.PoolException;
+import ru.mail.polis.alexantufiev.metrics.MetricsRegistry;
+import ru.mail.polis.alexantufiev.metrics.Timer;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Other node of the cluster with its own pool of keep-alive connections.
+ * <p>
+ * A request takes a permit for a connection before it is sent, the pool of {@link HttpClient} has as many
+ * connections as permits, so the time which requests wait for a free connection is measured here.
+ * Replication goes over the binary protocol of {@link RpcClient}, where a permit bounds the count of requests
+ * in flight, and HTTP is left for status and anti-entropy requests.
+ * <p>
+ * Requests go through {@link CircuitBreaker}: while the node is considered down they fail at once
+ * with {@link PoolException}, and {@link #ping} probes the node in the background.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class Peer {
+
+    private static final String POOL_PARAMETERS = "?clientMinPoolSize=%d&clientMaxPoolSize=%d"
+        + "&timeout=%d&connectTimeout=%d&keepalive=%b";
+    private static final byte[] RPC_CODES = {RpcFrame.GET, RpcFrame.PUT, RpcFrame.DELETE, RpcFrame.BATCH};
+    private static final String[] RPC_METHODS = {"GET", "PUT", "DELETE", "BATCH"};
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final String endpoint;
+    private final HttpClient client;
+    private final RpcClient rpcClient;
+    private final CircuitBreaker breaker = new CircuitBreaker();
+    private final Semaphore connections;
+    private final int timeoutMillis;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final Timer[] rpcLatencies = new Timer[RpcFrame.PING];
+
+    /**
+     * @param endpoint             endpoint of the node {@code http://<host>:<port>}
+     * @param poolSize             count of connections
+     * @param rpcConnections       count of connections of the binary protocol
+     * @param timeoutMillis        timeout of a request and of waiting for a connection
+     * @param connectTimeoutMillis timeout of a connection
+     * @param keepAlive            whether TCP keep-alive is enabled on connections
+     * @throws MalformedURLException if the endpoint is malformed
+     */
+    Peer(
+        String endpoint,
+        int poolSize,
+        int rpcConnections,
+        int timeoutMillis,
+        int connectTimeoutMillis,
+        boolean keepAlive
+    ) throws MalformedURLException {
+        this.endpoint = endpoint;
+        this.timeoutMillis = timeoutMillis;
+        connections = new Semaphore(poolSize);
+        client = new HttpClient(new ConnectionString(endpoint + String.format(
+            POOL_PARAMETERS,
+            poolSize,
+            poolSize,
+            timeoutMillis,
+            connectTimeoutMillis,
+            keepAlive
+        )));
+        rpcClient = new RpcClient(endpoint, rpcConnections, timeoutMillis, connectTimeoutMillis, keepAlive);
+        for (byte code : RPC_CODES) {
+            rpcLatencies[code] = new Timer();
+        }
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    Response get(String uri, String... headers)
+        throws InterruptedException, PoolException, IOException, HttpException {
+        acquire();
+        try {
+            return onResult(client.get(uri, headers));
+        } catch (IOException e) {
+            breaker.onFailure();
+            throw e;
+        } finally {
+            connections.release();
+        }
+    }
+
+    Response post(String uri, byte[] body, String... headers)
+        throws InterruptedException, PoolException, IOException, HttpException {
+        acquire();
+        try {
+            return onResult(client.post(uri, body, headers));
+        } catch (IOException e) {
+            breaker.onFailure();
+            throw e;
+        } finally {
+            connections.release();
+        }
+    }
+
+    /**
+     * Sends the request of the binary protocol and waits for its response, the latency is measured without
+     * the wait for a permit.
+     */
+    RpcFrame invoke(byte code, byte[] payload) throws InterruptedException, PoolException, IOException {
+        acquire();
+        long start = System.nanoTime();
+        try {
+            return onResult(rpcClient.invoke(code, payload));
+        } catch (IOException e) {
+            breaker.onFailure();
+            throw e;
+        } finally {
+            connections.release();
+            rpcLatencies[code].recordSince(start);
+        }
+    }
+
+    /**
+     * Sends a heartbeat request which closes the circuit if the node answers.
+     *
+     * @return whether the node has answered
+     */
+    boolean ping(int timeoutMillis) throws InterruptedException {
+        try {
+            if (rpcClient.invoke(RpcFrame.PING, RpcFrame.EMPTY, timeoutMillis).getCode() == RpcFrame.OK) {
+                breaker.onHeartbeat(System.nanoTime());
+                return true;
+            }
+        } catch (IOException e) {
+            breaker.onFailure();
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the node is considered down
+     */
+    boolean isDown() {
+        return breaker.isOpen();
+    }
+
+    private <T> T onResult(T result) {
+        breaker.onSuccess();
+        return result;
+    }
+
+    private void acquire() throws InterruptedException, PoolException {
+        if (!breaker.allowRequest(System.nanoTime())) {
+            throw new PoolException("Node is down: " + endpoint);
+        }
+        requests.increment();
+        if (connections.tryAcquire()) {
+            return;
+        }
+        long start = System.nanoTime();
+        boolean isAcquired = connections.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+        long wait = System.nanoTime() - start;
+        waits.increment();
+        waitNanos.add(wait);
+        maxWaitNanos.accumulateAndGet(wait, Math::max);
+        if (!isAcquired) {
+            throw new PoolException("No free connection to " + endpoint);
+        }
+    }
+
+    void close() {
+        client.close();
+        rpcClient.close();
+    }
+
+    /**
+     * Registers latency of requests of the binary protocol, statistics of waiting for a connection and the state
+     * of the circuit, all labelled with the endpoint.
+     */
+    void registerMetrics(MetricsRegistry registry) {
+        for (int i = 0; i < RPC_CODES.length; i++) {
+            registry.timer(
+                "kv_peer_rpc_seconds",
+                "Latency of requests of the binary protocol to peers.",
+                rpcLatencies[RPC_CODES[i]],
+                "peer", endpoint,
+                "method", RPC_METHODS[i]
+            );
+        }
+        registry.counter("kv_peer_requests_total", "Requests to peers.", this::getRequests, "peer", endpoint);
+        registry.counter(
+            "kv_peer_waits_total",
+            "Requests which waited for a connection to peers.",
+            this::getWaits,
+            "peer", endpoint
+        );
+        registry.counter(
+            "kv_peer_wait_seconds_total",
+            "Total time of waiting for a connection to peers.",
+            () -> getWaitNanos() / NANOS_PER_SECOND,
+            "peer", endpoint
+        );
+        registry.gauge(
+            "kv_peer_max_wait_seconds",
+            "The longest wait for a connection to peers.",
+            () -> getMaxWaitNanos() / NANOS_PER_SECOND,
+            "peer", endpoint
+        );
+        registry.gauge("kv_peer_down", "Whether peers are considered down.", () -> isDown() ? 1 : 0, "peer", endpoint);
+    }
+
+    /**
+     * @return count of requests
+     */
+    long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return count of requests which waited for a connection
+     */
+    long getWaits() {
+        return waits.sum();
+    }
+
+    /**
+     * @return total time of waiting for a connection
+     */
+    long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    /**
+     * @return the longest wait for a connection
+     */
+    long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+}
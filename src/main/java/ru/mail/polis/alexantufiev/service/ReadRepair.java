@@ -0,0 +1,92 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded and rate limited background executor of read repairs.
+ * <p>
+ * Repairs never block the caller: a repair is dropped if the rate limit is exceeded or the queue is full,
+ * the next read of the key will find the divergence again.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class ReadRepair {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadRepair.class);
+
+    private final ThreadPoolExecutor executor;
+    private final long nanosPerRepair;
+    private final long maxBurstNanos;
+    private long nextFreeNanos;
+
+    ReadRepair(String name, int queueSize, int repairsPerSecond) {
+        executor = new ThreadPoolExecutor(
+            1,
+            1,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        nanosPerRepair = TimeUnit.SECONDS.toNanos(1) / repairsPerSecond;
+        maxBurstNanos = TimeUnit.SECONDS.toNanos(1);
+        nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * Schedules a repair.
+     *
+     * @param repair repair of a replica
+     * @return {@code false} if the repair was dropped
+     */
+    boolean submit(Runnable repair) {
+        if (!tryAcquire()) {
+            logger.debug("*** READ REPAIR DROPPED : RATE LIMIT ***");
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    repair.run();
+                } catch (RuntimeException e) {
+                    logger.error("catch exception in read repair", e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.debug("*** READ REPAIR DROPPED : QUEUE IS FULL ***");
+            return false;
+        }
+    }
+
+    /**
+     * Token bucket: every repair takes {@link #nanosPerRepair}, unused time is accumulated for one second.
+     */
+    private synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (nextFreeNanos < now - maxBurstNanos) {
+            nextFreeNanos = now - maxBurstNanos;
+        }
+        if (nextFreeNanos > now) {
+            return false;
+        }
+        nextFreeNanos += nanosPerRepair;
+        return true;
+    }
+
+    void stop() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,130 @@
+package ru.mail.polis.alexantufiev.service;
+
+import one.nio.http.Request;
+import one.nio.http.Response;
+import one.nio.pool.PoolException;
+import org.jetbrains.annotations.Nullable;
+import ru.mail.polis.alexantufiev.metrics.Counter;
+import ru.mail.polis.alexantufiev.metrics.MetricsRegistry;
+import ru.mail.polis.alexantufiev.metrics.Timer;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Metrics of requests to {@code /v0/entity}: latency of every method and errors by type.
+ * <p>
+ * A request of a client is coordinated, a request of a coordinator to a replica, a frame of {@link RpcFrame}
+ * or a request with {@code NO_REPLICA} header, is local. Latency of a request is measured from the start
+ * of its handling on the selector thread to its response, so the time in the queue of workers is included.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+final class RequestMetrics {
+
+    private static final String[] METHODS = {"GET", "PUT", "DELETE"};
+    private static final String[] ERRORS = {
+        Response.BAD_REQUEST,
+        Response.METHOD_NOT_ALLOWED,
+        Response.INTERNAL_ERROR,
+        Response.SERVICE_UNAVAILABLE,
+        Response.GATEWAY_TIMEOUT
+    };
+
+    private final Timer[] coordinated = new Timer[METHODS.length];
+    private final Timer[] local = new Timer[METHODS.length];
+    private final Counter[] errors = new Counter[ERRORS.length];
+    private final Counter otherErrors;
+    private final Counter replicaIoErrors;
+    private final Counter replicaPoolErrors;
+    private final Counter replicaRejectedErrors;
+    private final Counter replicaOtherErrors;
+
+    RequestMetrics(MetricsRegistry registry) {
+        String requests = "kv_request_seconds";
+        String requestsHelp = "Latency of requests to /v0/entity.";
+        for (int i = 0; i < METHODS.length; i++) {
+            coordinated[i] = registry.timer(requests, requestsHelp, "method", METHODS[i], "role", "coordinator");
+            local[i] = registry.timer(requests, requestsHelp, "method", METHODS[i], "role", "local");
+        }
+        String httpErrors = "kv_http_errors_total";
+        String httpErrorsHelp = "Error responses by status.";
+        for (int i = 0; i < ERRORS.length; i++) {
+            errors[i] = registry.counter(httpErrors, httpErrorsHelp, "status", ERRORS[i].substring(0, 3));
+        }
+        otherErrors = registry.counter(httpErrors, httpErrorsHelp, "status", "other");
+        String replicaErrors = "kv_replica_errors_total";
+        String replicaErrorsHelp = "Failed requests of a coordinator to replicas by type of failure.";
+        replicaIoErrors = registry.counter(replicaErrors, replicaErrorsHelp, "type", "io");
+        replicaPoolErrors = registry.counter(replicaErrors, replicaErrorsHelp, "type", "pool");
+        replicaRejectedErrors = registry.counter(replicaErrors, replicaErrorsHelp, "type", "rejected");
+        replicaOtherErrors = registry.counter(replicaErrors, replicaErrorsHelp, "type", "other");
+    }
+
+    /**
+     * @param method method of {@link Request}
+     * @return timer of the method, or {@code null} if the method is not measured
+     */
+    @Nullable
+    Timer getTimer(int method, boolean isLocal) {
+        Timer[] timers = isLocal ? local : coordinated;
+        switch (method) {
+            case Request.METHOD_GET:
+                return timers[0];
+            case Request.METHOD_PUT:
+                return timers[1];
+            case Request.METHOD_DELETE:
+                return timers[2];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param code code of a request frame
+     * @return timer of the local method, or {@code null} if the request is not measured
+     */
+    @Nullable
+    Timer getLocalTimer(byte code) {
+        switch (code) {
+            case RpcFrame.GET:
+                return local[0];
+            case RpcFrame.PUT:
+                return local[1];
+            case RpcFrame.DELETE:
+                return local[2];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param status status line of an error response, {@code 404} is not counted
+     */
+    void onError(String status) {
+        if (Response.NOT_FOUND.equals(status)) {
+            return;
+        }
+        for (int i = 0; i < ERRORS.length; i++) {
+            if (ERRORS[i].equals(status)) {
+                errors[i].increment();
+                return;
+            }
+        }
+        otherErrors.increment();
+    }
+
+    void onReplicaError(Throwable e) {
+        if (e instanceof PoolException) {
+            replicaPoolErrors.increment();
+        } else if (e instanceof IOException) {
+            replicaIoErrors.increment();
+        } else if (e instanceof RejectedExecutionException) {
+            replicaRejectedErrors.increment();
+        } else {
+            replicaOtherErrors.increment();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package ru.mail.polis.alexantufiev.service;
+
+import one.nio.net.Socket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client of the binary protocol of {@link RpcSession} which multiplexes requests over a few persistent connections.
+ * <p>
+ * Requests are spread over connections round-robin, a connection has a thread which reads responses and completes
+ * the waiting requests by their ids. A broken connection fails its requests and is opened again by the next
+ * request, so idle connections closed by the node are restored transparently.
+ * <p>
+ * Writes and reads of a started frame time out like requests, so a stuck node closes the connection instead
+ * of blocking its callers, and a caller does not wait for a write of another one longer than its timeout.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class RpcClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(RpcClient.class);
+    private static final String UPGRADE_REQUEST_PATTERN = "GET /v0/rpc HTTP/1.1\r\nHost: %s:%d\r\n"
+        + "Connection: Upgrade\r\nUpgrade: " + RpcSession.PROTOCOL + "\r\n\r\n";
+    private static final String UPGRADE_STATUS = "HTTP/1.1 101";
+    private static final int MAX_UPGRADE_RESPONSE_SIZE = 1024;
+
+    private final String host;
+    private final int port;
+    private final int timeoutMillis;
+    private final int connectTimeoutMillis;
+    private final boolean keepAlive;
+    private final Connection[] connections;
+    private final AtomicInteger ids = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * @throws MalformedURLException if the endpoint is malformed
+     */
+    RpcClient(
+        String endpoint,
+        int countOfConnections,
+        int timeoutMillis,
+        int connectTimeoutMillis,
+        boolean keepAlive
+    ) throws MalformedURLException {
+        URL url = new URL(endpoint);
+        host = url.getHost();
+        port = url.getPort();
+        this.timeoutMillis = timeoutMillis;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.keepAlive = keepAlive;
+        connections = new Connection[countOfConnections];
+    }
+
+    /**
+     * Sends the request and waits for its response.
+     *
+     * @throws IOException if the node is unavailable or has not answered in time
+     */
+    RpcFrame invoke(byte code, byte[] payload) throws IOException, InterruptedException {
+        return invoke(code, payload, timeoutMillis);
+    }
+
+    /**
+     * Sends the request and waits for its response not longer than {@code timeoutMillis}.
+     *
+     * @throws IOException if the node is unavailable or has not answered in time
+     */
+    RpcFrame invoke(byte code, byte[] payload, int timeoutMillis) throws IOException, InterruptedException {
+        int id = ids.incrementAndGet();
+        Connection connection = getConnection(id);
+        CompletableFuture<RpcFrame> response = connection.send(new RpcFrame(id, code, payload), timeoutMillis);
+        try {
+            return response.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (TimeoutException e) {
+            throw new IOException("RPC TIMEOUT: " + host + ':' + port, e);
+        } finally {
+            connection.pending.remove(id);
+        }
+    }
+
+    void close() {
+        closed = true;
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                if (connection != null) {
+                    connection.close(new IOException("Client is closed"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a connection outside of the lock, so a slow connect to one node does not block the requests
+     * over the other connections, and keeps the connection installed by a concurrent request if there is one.
+     */
+    private Connection getConnection(int id) throws IOException {
+        int index = (id & Integer.MAX_VALUE) % connections.length;
+        Connection connection = getOpenConnection(index);
+        if (connection != null) {
+            return connection;
+        }
+        Connection created = new Connection();
+        try {
+            synchronized (connections) {
+                connection = getOpenConnection(index);
+                if (connection == null) {
+                    connections[index] = created;
+                    return created;
+                }
+            }
+        } catch (IOException e) {
+            created.close(e);
+            throw e;
+        }
+        created.close(new IOException("Connection is opened concurrently"));
+        return connection;
+    }
+
+    private Connection getOpenConnection(int index) throws IOException {
+        synchronized (connections) {
+            if (closed) {
+                throw new IOException("Client is closed");
+            }
+            Connection connection = connections[index];
+            return connection == null || connection.closed.get() ? null : connection;
+        }
+    }
+
+    private final class Connection implements Runnable {
+
+        private final Socket socket;
+        private final Map<Integer, CompletableFuture<RpcFrame>> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final ReentrantLock writeLock = new ReentrantLock();
+
+        private Connection() throws IOException {
+            socket = Socket.create();
+            try {
+                socket.setTimeout(connectTimeoutMillis);
+                socket.connect(host, port);
+                socket.setNoDelay(true);
+                socket.setKeepAlive(keepAlive);
+                upgrade();
+                socket.setTimeout(timeoutMillis);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            Thread reader = new Thread(this, "rpc-" + host + ':' + port);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void upgrade() throws IOException {
+            byte[] request = String.format(UPGRADE_REQUEST_PATTERN, host, port).getBytes(StandardCharsets.US_ASCII);
+            socket.writeFully(request, 0, request.length);
+            byte[] response = new byte[MAX_UPGRADE_RESPONSE_SIZE];
+            int length = 0;
+            while (!isEndOfHeaders(response, length)) {
+                if (length == response.length) {
+                    throw new IOException("TOO LONG UPGRADE RESPONSE");
+                }
+                int bytesRead = socket.read(response, length, response.length - length);
+                if (bytesRead <= 0) {
+                    throw new IOException("CONNECTION CLOSED ON UPGRADE");
+                }
+                length += bytesRead;
+            }
+            String status = new String(response, 0, length, StandardCharsets.US_ASCII);
+            if (!status.startsWith(UPGRADE_STATUS)) {
+                throw new IOException("UPGRADE REJECTED: " + status.substring(0, status.indexOf('\r')));
+            }
+        }
+
+        private boolean isEndOfHeaders(byte[] response, int length) {
+            return length >= 4
+                && response[length - 4] == '\r'
+                && response[length - 3] == '\n'
+                && response[length - 2] == '\r'
+                && response[length - 1] == '\n';
+        }
+
+        CompletableFuture<RpcFrame> send(RpcFrame frame, int timeoutMillis) throws IOException, InterruptedException {
+            List<RpcFrame> parts = frame.split();
+            CompletableFuture<RpcFrame> response = new CompletableFuture<>();
+            pending.put(frame.getId(), response);
+            if (!writeLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                pending.remove(frame.getId());
+                throw new IOException("RPC WRITE TIMEOUT: " + host + ':' + port);
+            }
+            try {
+                if (closed.get()) {
+                    pending.remove(frame.getId());
+                    throw new IOException("Connection is closed");
+                }
+                for (RpcFrame part : parts) {
+                    byte[] bytes = part.encode();
+                    socket.writeFully(bytes, 0, bytes.length);
+                }
+            } catch (IOException e) {
+                close(e);
+                throw e;
+            } finally {
+                writeLock.unlock();
+            }
+            return response;
+        }
+
+        @Override
+        public void run() {
+            byte[] header = new byte[RpcFrame.HEADER_SIZE];
+            RpcFrame.Assembler assembler = new RpcFrame.Assembler();
+            try {
+                while (!closed.get()) {
+                    readHeader(header);
+                    ByteBuffer buffer = ByteBuffer.wrap(header);
+                    byte[] payload = new byte[RpcFrame.checkLength(buffer.getInt())];
+                    int id = buffer.getInt();
+                    byte code = buffer.get();
+                    socket.readFully(payload, 0, payload.length);
+                    RpcFrame message = assembler.add(new RpcFrame(id, code, payload));
+                    CompletableFuture<RpcFrame> response = message == null ? null : pending.remove(id);
+                    if (response != null) {
+                        response.complete(message);
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("*** RPC CONNECTION CLOSED *** NODE='{}:{}' MESSAGE='{}'", host, port, e.getMessage());
+                close(e);
+            }
+        }
+
+        /**
+         * Reads the header of the next frame, an idle connection waits for it without a timeout.
+         */
+        private void readHeader(byte[] header) throws IOException {
+            int length = 0;
+            while (length < header.length) {
+                int bytesRead;
+                try {
+                    bytesRead = socket.read(header, length, header.length - length);
+                } catch (SocketTimeoutException e) {
+                    if (length > 0 || closed.get()) {
+                        throw e;
+                    }
+                    continue;
+                }
+                if (bytesRead <= 0) {
+                    throw new IOException("CONNECTION CLOSED");
+                }
+                length += bytesRead;
+            }
+        }
+
+        private void close(IOException cause) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            socket.close();
+            for (CompletableFuture<RpcFrame> response : pending.values()) {
+                response.completeExceptionally(cause);
+            }
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Frame of the binary protocol between nodes.
+ * <p>
+ * A frame is the length of the payload, the id of the request, the code and the payload. The code of a request is
+ * its operation, the code of a response is its status, a response has the id of its request, so many requests
+ * can be in flight on one connection and responses can come in any order. Lengths and ids are 4 bytes big-endian.
+ * <p>
+ * Payloads of requests:
+ * <ul>
+ * <li>{@link #GET} - the key;</li>
+ * <li>{@link #PUT} and {@link #DELETE} - the record encoded by
+ * {@link ru.mail.polis.alexantufiev.entity.Record#encode}, it carries the version, the tombstone flag
+ * and the count of replicas;</li>
+ * <li>{@link #BATCH} - operations encoded by {@link ru.mail.polis.alexantufiev.entity.Operation#encode};</li>
+ * <li>{@link #PING} - empty.</li>
+ * </ul>
+ * The payload of {@link #OK} is the entity in the binary layout for {@link #GET}, results encoded
+ * by {@link ru.mail.polis.alexantufiev.entity.OperationResult#encode} for {@link #BATCH} and empty for others.
+ * <p>
+ * The payload of a frame which is sent may be a slice of a bigger array, e.g. of a record of the storage.
+ * <p>
+ * A payload is at most {@link #MAX_PAYLOAD_SIZE}, so a header never makes the receiver allocate much memory.
+ * A bigger message is {@link #split} into frames with the same id which follow each other, all of them but the last
+ * have the {@link #MORE} flag in the code, and the receiver joins them by {@link Assembler} up to
+ * {@link #MAX_MESSAGE_SIZE}. A connection buffers at most one message, so the cap bounds the heap taken by a peer
+ * to a few megabytes per connection, and bigger messages, e.g. a batch, must be paged by the sender.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+final class RpcFrame {
+
+    static final byte GET = 1;
+    static final byte PUT = 2;
+    static final byte DELETE = 3;
+    static final byte BATCH = 4;
+    static final byte PING = 5;
+
+    static final byte OK = 0;
+    static final byte NOT_FOUND = 1;
+    static final byte ERROR = 2;
+
+    static final int HEADER_SIZE = 2 * Integer.BYTES + 1;
+    static final int MAX_PAYLOAD_SIZE = 1024 * 1024;
+    static final int MAX_MESSAGE_SIZE = 4 * 1024 * 1024;
+    /**
+     * A value which is sent to replicas leaves a payload for the key and the header of the record in a message.
+     */
+    static final int MAX_VALUE_SIZE = MAX_MESSAGE_SIZE - MAX_PAYLOAD_SIZE;
+
+    /**
+     * Flag of the code of a frame whose payload is continued by the next frame.
+     */
+    static final byte MORE = 0x40;
+
+    static final byte[] EMPTY = new byte[0];
+
+    private final int id;
+    private final byte code;
+    private final byte[] payload;
+    private final int offset;
+    private final int length;
+
+    RpcFrame(int id, byte code, byte[] payload) {
+        this(id, code, payload, 0, payload.length);
+    }
+
+    /**
+     * @param payload array with the payload, it must not be modified until the frame is written
+     * @param offset  offset of the payload in the array
+     * @param length  length of the payload
+     */
+    RpcFrame(int id, byte code, byte[] payload, int offset, int length) {
+        this.id = id;
+        this.code = code;
+        this.payload = payload;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    RpcFrame(int id, byte code) {
+        this(id, code, EMPTY);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    byte getCode() {
+        return code;
+    }
+
+    /**
+     * @return the payload, it is copied if it is a slice of a bigger array
+     */
+    byte[] getPayload() {
+        return offset == 0 && length == payload.length ? payload : Arrays.copyOfRange(payload, offset, offset + length);
+    }
+
+    byte[] getPayloadArray() {
+        return payload;
+    }
+
+    int getPayloadOffset() {
+        return offset;
+    }
+
+    int getPayloadLength() {
+        return length;
+    }
+
+    byte[] encode() {
+        return ByteBuffer.allocate(HEADER_SIZE + length)
+            .putInt(length)
+            .putInt(id)
+            .put(code)
+            .put(payload, offset, length)
+            .array();
+    }
+
+    /**
+     * @return frames with payloads not bigger than {@link #MAX_PAYLOAD_SIZE} which must be written one after another
+     * @throws IOException if the payload is bigger than {@link #MAX_MESSAGE_SIZE}
+     */
+    List<RpcFrame> split() throws IOException {
+        if (length <= MAX_PAYLOAD_SIZE) {
+            return Collections.singletonList(this);
+        }
+        if (length > MAX_MESSAGE_SIZE) {
+            throw new IOException("TOO BIG MESSAGE: " + length);
+        }
+        List<RpcFrame> frames = new ArrayList<>(length / MAX_PAYLOAD_SIZE + 1);
+        for (int start = 0; start < length; start += MAX_PAYLOAD_SIZE) {
+            int partLength = Math.min(MAX_PAYLOAD_SIZE, length - start);
+            byte partCode = start + partLength < length ? (byte) (code | MORE) : code;
+            frames.add(new RpcFrame(id, partCode, payload, offset + start, partLength));
+        }
+        return frames;
+    }
+
+    /**
+     * @return the header of the frame, the payload is written after it
+     */
+    byte[] encodeHeader() {
+        return ByteBuffer.allocate(HEADER_SIZE)
+            .putInt(length)
+            .putInt(id)
+            .put(code)
+            .array();
+    }
+
+    /**
+     * Reads the next frame from the buffer.
+     *
+     * @return the frame, or {@code null} if the frame is not complete yet and the position is not moved
+     * @throws IOException if the length of the payload is malformed
+     */
+    @Nullable
+    static RpcFrame read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int position = buffer.position();
+        int length = checkLength(buffer.getInt(position));
+        if (buffer.remaining() < HEADER_SIZE + length) {
+            return null;
+        }
+        buffer.position(position + Integer.BYTES);
+        int id = buffer.getInt();
+        byte code = buffer.get();
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        return new RpcFrame(id, code, payload);
+    }
+
+    /**
+     * @throws IOException if the length of the payload is negative or too big
+     */
+    static int checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+            throw new IOException("BAD LENGTH OF FRAME: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Joins frames of a message split by {@link #split}, frames of a connection must be given in the order
+     * they are read.
+     */
+    static final class Assembler {
+
+        private ByteArrayOutputStream parts;
+        private int id;
+
+        /**
+         * @return the whole message, or {@code null} if the frame is continued by the next one
+         * @throws IOException if frames of another message come in between or the message is too big
+         */
+        @Nullable
+        RpcFrame add(RpcFrame frame) throws IOException {
+            boolean isContinued = (frame.code & MORE) != 0;
+            if (parts == null) {
+                if (!isContinued) {
+                    return frame;
+                }
+                parts = new ByteArrayOutputStream(MAX_PAYLOAD_SIZE);
+                id = frame.id;
+            } else if (frame.id != id) {
+                throw new IOException("FRAME IN SPLIT MESSAGE: " + frame.id);
+            }
+            if (parts.size() + frame.length > MAX_MESSAGE_SIZE) {
+                throw new IOException("TOO BIG MESSAGE: " + id);
+            }
+            parts.write(frame.payload, frame.offset, frame.length);
+            if (isContinued) {
+                return null;
+            }
+            byte[] message = parts.toByteArray();
+            parts = null;
+            return new RpcFrame(id, frame.code, message);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package ru.mail.polis.alexantufiev.service;
+
+import one.nio.http.HttpServer;
+import one.nio.http.Response;
+import one.nio.net.Socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Session which is switched from HTTP to frames of {@link RpcFrame} by a request with
+ * {@code Upgrade: kv-rpc}, so nodes replicate over the port of the service without another server.
+ * <p>
+ * After the upgrade all bytes of the connection are frames, every request frame is given to the handler, which
+ * may answer it from any thread with {@link #sendFrame}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class RpcSession extends StreamingSession {
+
+    static final String PROTOCOL = "kv-rpc";
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final RpcFrame.Assembler assembler = new RpcFrame.Assembler();
+    private Handler handler;
+    private ByteBuffer frames;
+
+    /**
+     * Handles a request frame of the session.
+     */
+    @FunctionalInterface
+    interface Handler {
+        void handle(RpcSession session, RpcFrame frame);
+    }
+
+    RpcSession(Socket socket, HttpServer server, RequestMetrics metrics, AccessLog accessLog) {
+        super(socket, server, metrics, accessLog);
+    }
+
+    /**
+     * Answers the upgrade request, the next bytes of the connection are read as frames.
+     */
+    void upgrade(Handler handler) throws IOException {
+        this.handler = handler;
+        frames = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        Response response = new Response(Response.SWITCHING_PROTOCOLS, Response.EMPTY);
+        response.addHeader("Upgrade: " + PROTOCOL);
+        response.addHeader("Connection: Upgrade");
+        sendResponse(response);
+    }
+
+    /**
+     * Writes the frame split by {@link RpcFrame#split}, a big payload is written from its own array after
+     * the header without a copy.
+     */
+    synchronized void sendFrame(RpcFrame frame) throws IOException {
+        for (RpcFrame part : frame.split()) {
+            if (part.getPayloadLength() < MIN_SLICE_LENGTH) {
+                byte[] bytes = part.encode();
+                write(bytes, 0, bytes.length);
+            } else {
+                byte[] header = part.encodeHeader();
+                write(header, 0, header.length);
+                write(part.getPayloadArray(), part.getPayloadOffset(), part.getPayloadLength());
+            }
+        }
+    }
+
+    @Override
+    protected void processRead(byte[] buffer) throws IOException {
+        if (handler == null) {
+            super.processRead(buffer);
+            return;
+        }
+        int bytesRead = socket.read(frames.array(), frames.position(), frames.remaining());
+        if (bytesRead <= 0) {
+            return;
+        }
+        frames.position(frames.position() + bytesRead);
+        frames.flip();
+        RpcFrame frame = RpcFrame.read(frames);
+        while (frame != null) {
+            RpcFrame message = assembler.add(frame);
+            if (message != null) {
+                handler.handle(this, message);
+            }
+            frame = RpcFrame.read(frames);
+        }
+        frames.compact();
+        if (!frames.hasRemaining()) {
+            grow();
+        }
+    }
+
+    /**
+     * Makes room for a frame which is bigger than the buffer, the buffer is doubled as the frame is read,
+     * so the header alone does not make it allocated.
+     */
+    private void grow() throws IOException {
+        int length = RpcFrame.checkLength(frames.getInt(0));
+        ByteBuffer bigger = ByteBuffer.allocate(Math.min(frames.capacity() * 2, RpcFrame.HEADER_SIZE + length));
+        frames.flip();
+        bigger.put(frames);
+        frames = bigger;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.mail.polis.alexantufiev.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key and settings into one call, all callers get its result.
+ * <p>
+ * A call is forgotten when it completes, so a caller which comes later starts a new one. A call with other
+ * settings than the call in flight is not coalesced. {@link #forget} detaches the call in flight, it must be called
+ * when a write is done and before it is answered, so the callers which come after the answer do not get
+ * the result of a read started before the write has landed.
+ *
+ * @param <K> type of keys
+ * @param <V> type of results
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    CompletableFuture<V> execute(K key, Object settings, Supplier<CompletableFuture<V>> call) {
+        Flight<V> flight = new Flight<>(settings);
+        Flight<V> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            return existing.settings.equals(settings) ? existing.result : call.get();
+        }
+        try {
+            call.get().whenComplete((result, e) -> {
+                flights.remove(key, flight);
+                if (e == null) {
+                    flight.result.complete(result);
+                } else {
+                    flight.result.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            flights.remove(key, flight);
+            flight.result.completeExceptionally(e);
+        }
+        return flight.result;
+    }
+
+    void forget(K key) {
+        flights.remove(key);
+    }
+
+    /**
+     * Forgets the call in flight when the write completes.
+     *
+     * @param key   key of the written value
+     * @param write future of the write
+     * @return future which completes as {@code write} after the call is forgotten
+     */
+    <T> CompletableFuture<T> forgetAfter(K key, CompletableFuture<T> write) {
+        return write.whenComplete((result, e) -> forget(key));
+    }
+
+    private static final class Flight<V> {
+
+        private final Object settings;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+
+        private Flight(Object settings) {
+            this.settings = settings;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package ru.mail.polis.alexantufiev.service;
+
+import one.nio.http.HttpServer;
+import one.nio.http.HttpSession;
+import one.nio.http.Request;
+import one.nio.http.Response;
+import one.nio.net.Socket;
+import org.jetbrains.annotations.Nullable;
+import ru.mail.polis.alexantufiev.dao.RecordIterator;
+import ru.mail.polis.alexantufiev.entity.Record;
+import ru.mail.polis.alexantufiev.metrics.Timer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Session which streams records with chunked transfer encoding.
+ * <p>
+ * A chunk is the length of the key as 4 bytes big-endian, the key and the value of a record, so keys and values
+ * may have any bytes and the value takes the rest of the chunk. Records are read from the storage by a worker,
+ * at most {@link #MAX_REFILL_BYTES} of chunks at a time, and the next part is read only when the write queue of
+ * the session is empty, so a slow client does not make the whole range buffered in memory and a selector thread
+ * only writes ready chunks.
+ * <p>
+ * The session also measures the request which is handled now, counts error responses in {@link RequestMetrics}
+ * and puts the sampled request into {@link AccessLog} when it is answered.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class StreamingSession extends HttpSession {
+
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * A shorter body is copied into the buffer of headers, as one write of a small response is cheaper than two.
+     */
+    static final int MIN_SLICE_LENGTH = 8 * 1024;
+
+    /**
+     * Bytes of chunks which are read from the storage by a worker before they are written.
+     */
+    static final int MAX_REFILL_BYTES = 64 * 1024;
+
+    private final RequestMetrics metrics;
+    private final AccessLog accessLog;
+    private RecordIterator records;
+    private Executor executor;
+    private boolean isRefilling;
+    private boolean isKeepAlive;
+    private Timer timer;
+    private long startNanos;
+    private boolean isLogged;
+    private int method;
+    private int keyHash;
+    private boolean isLocal;
+    private int acks;
+    private int replicas;
+
+    StreamingSession(Socket socket, HttpServer server, RequestMetrics metrics, AccessLog accessLog) {
+        super(socket, server);
+        this.metrics = metrics;
+        this.accessLog = accessLog;
+    }
+
+    /**
+     * Starts measuring the request which is handled now, the latency is recorded when it is answered.
+     *
+     * @param timer timer of the request or {@code null} if it is not measured
+     */
+    synchronized void startTimer(@Nullable Timer timer) {
+        this.timer = timer;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Logs the request which is handled now when it is answered, it must be measured by {@link #startTimer}.
+     *
+     * @param method method of {@link Request}
+     */
+    synchronized void logRequest(int method, int keyHash, boolean isLocal) {
+        isLogged = true;
+        this.method = method;
+        this.keyHash = keyHash;
+        this.isLocal = isLocal;
+        acks = AccessLog.UNKNOWN;
+        replicas = 0;
+    }
+
+    /**
+     * Sets the outcome of replicas of the coordinated request which is handled now.
+     *
+     * @param acks     count of replicas which have answered or {@link AccessLog#UNKNOWN}
+     * @param replicas count of requested replicas
+     */
+    synchronized void setReplicas(int acks, int replicas) {
+        this.acks = acks;
+        this.replicas = replicas;
+    }
+
+    @Override
+    public synchronized void sendResponse(Response response) throws IOException {
+        onResponse(response.getStatus());
+        super.sendResponse(response);
+    }
+
+    /**
+     * Answers the request which is handled now with a slice of an array as the body, a big body is written
+     * to the socket from the array without a copy into the response.
+     *
+     * @param response response with headers and without body
+     * @param bytes    array with the body, it must not be modified until the body is written
+     */
+    synchronized void sendValue(Response response, byte[] bytes, int offset, int length) throws IOException {
+        onResponse(response.getStatus());
+        boolean keepAlive = startResponse(response);
+        response.addHeader("Content-Length: " + length);
+        byte[] headers = response.toBytes(false);
+        if (handling.getMethod() == Request.METHOD_HEAD) {
+            write(headers, 0, headers.length);
+        } else if (length < MIN_SLICE_LENGTH) {
+            byte[] whole = Arrays.copyOf(headers, headers.length + length);
+            System.arraycopy(bytes, offset, whole, headers.length, length);
+            write(whole, 0, whole.length);
+        } else {
+            write(headers, 0, headers.length);
+            write(bytes, offset, length);
+        }
+        finishRequest(keepAlive);
+    }
+
+    private void onResponse(int status) {
+        long latency = System.nanoTime() - startNanos;
+        Timer current = timer;
+        if (current != null) {
+            timer = null;
+            current.record(latency);
+        }
+        if (isLogged) {
+            isLogged = false;
+            accessLog.add(method, keyHash, status, latency, isLocal, acks, replicas);
+        }
+    }
+
+    @Override
+    public synchronized void sendError(String code, String message) throws IOException {
+        metrics.onError(code);
+        super.sendError(code, message);
+    }
+
+    /**
+     * Answers the request which is handled now with records of the iterator, it must be called by a worker
+     * as the first records are read by the calling thread.
+     *
+     * @param records  records of the response, the iterator is closed when it is streamed or the session is closed
+     * @param executor executor which reads the next records when the written ones are sent
+     */
+    void stream(RecordIterator records, Executor executor) throws IOException {
+        synchronized (this) {
+            this.records = records;
+            this.executor = executor;
+            Response response = new Response(Response.OK);
+            isKeepAlive = startResponse(response);
+            response.addHeader("Transfer-Encoding: chunked");
+            writeResponse(response, false);
+            isRefilling = true;
+        }
+        refill(records);
+    }
+
+    @Override
+    protected synchronized void processWrite() throws Exception {
+        super.processWrite();
+        scheduleRefill();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (records != null) {
+            if (!isRefilling) {
+                records.close();
+            }
+            records = null;
+        }
+        super.close();
+    }
+
+    private void scheduleRefill() {
+        if (records == null || isRefilling || queueHead != null) {
+            return;
+        }
+        RecordIterator current = records;
+        isRefilling = true;
+        try {
+            executor.execute(() -> refill(current));
+        } catch (RejectedExecutionException e) {
+            isRefilling = false;
+            close();
+        }
+    }
+
+    /**
+     * Reads the next chunks without the lock of the session, so a selector thread is not blocked by the storage,
+     * and writes them. The iterator is owned by the calling thread while {@link #isRefilling} is set.
+     */
+    private void refill(RecordIterator current) {
+        List<byte[]> chunks = new ArrayList<>();
+        int size = 0;
+        boolean hasNext;
+        try {
+            while ((hasNext = current.hasNext()) && size < MAX_REFILL_BYTES) {
+                byte[] chunk = toChunk(current.next());
+                chunks.add(chunk);
+                size += chunk.length;
+            }
+        } catch (RuntimeException e) {
+            current.close();
+            synchronized (this) {
+                isRefilling = false;
+                records = null;
+                close();
+            }
+            return;
+        }
+        synchronized (this) {
+            isRefilling = false;
+            if (records != current) {
+                current.close();
+                return;
+            }
+            try {
+                for (byte[] chunk : chunks) {
+                    write(chunk, 0, chunk.length);
+                }
+                if (hasNext) {
+                    scheduleRefill();
+                } else {
+                    write(LAST_CHUNK, 0, LAST_CHUNK.length);
+                    records = null;
+                    finishRequest(isKeepAlive);
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+    }
+
+    private static byte[] toChunk(Record record) {
+        byte[] key = record.getKey();
+        byte[] value = record.getEntity().getBytes();
+        int dataLength = Integer.BYTES + key.length + value.length;
+        byte[] length = Integer.toHexString(dataLength).getBytes(StandardCharsets.US_ASCII);
+        byte[] chunk = new byte[length.length + CRLF.length + dataLength + CRLF.length];
+        int offset = 0;
+        System.arraycopy(length, 0, chunk, offset, length.length);
+        offset += length.length;
+        System.arraycopy(CRLF, 0, chunk, offset, CRLF.length);
+        offset += CRLF.length;
+        ByteBuffer.wrap(chunk).putInt(offset, key.length);
+        offset += Integer.BYTES;
+        System.arraycopy(key, 0, chunk, offset, key.length);
+        offset += key.length;
+        System.arraycopy(value, 0, chunk, offset, value.length);
+        offset += value.length;
+        System.arraycopy(CRLF, 0, chunk, offset, CRLF.length);
+        return chunk;
+    }
+
+    /**
+     * Adds the {@code Connection} header to the response of the request which is handled now
+     * like {@link HttpSession#sendResponse} does.
+     *
+     * @return {@code true} if the connection is kept alive after the response
+     */
+    private boolean startResponse(Response response) throws IOException {
+        if (handling == null) {
+            throw new IOException("Out of order response");
+        }
+        server.incRequestsProcessed();
+        String connection = handling.getHeader("Connection: ");
+        boolean keepAlive = handling.isHttp11()
+            ? !"close".equalsIgnoreCase(connection)
+            : "Keep-Alive".equalsIgnoreCase(connection);
+        response.addHeader(keepAlive ? "Connection: Keep-Alive" : "Connection: close");
+        return keepAlive;
+    }
+
+    /**
+     * Completes the streamed or sliced response like {@link HttpSession#sendResponse} does: the connection is
+     * closed if it is not kept alive or the client has finished, otherwise the pipelined request is handled.
+     */
+    private void finishRequest(boolean keepAlive) throws IOException {
+        if (!keepAlive) {
+            scheduleClose();
+        }
+        Request next = pipeline.pollFirst();
+        handling = next;
+        if (next == FIN) {
+            scheduleClose();
+        } else if (next != null) {
+            server.handleRequest(next, this);
+        }
+    }
+}
@@ -24,10 +24,16 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -288,4 +294,48 @@ class SingleNodeTest extends TestBase {
             assertEquals(404, get(key).getStatus());
         });
     }
+
+    @Test
+    void closeAfterBigValue() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            final byte[] value = new byte[16 * 1024];
+            ThreadLocalRandom.current().nextBytes(value);
+
+            // Insert
+            assertEquals(201, upsert(key, value).getStatus());
+
+            // Check that the connection is closed after the response
+            for (final String request : new String[]{
+                    "GET " + path(key) + " HTTP/1.0\r\n\r\n",
+                    "GET " + path(key) + " HTTP/1.1\r\nConnection: close\r\n\r\n"}) {
+                final byte[] response = readUntilClose(request);
+                final String headers = new String(
+                        response,
+                        0,
+                        response.length - value.length,
+                        StandardCharsets.US_ASCII);
+                assertTrue(headers.startsWith("HTTP/1.1 200"), headers);
+                assertTrue(headers.contains("Connection: close\r\n"), headers);
+                assertArrayEquals(
+                        value,
+                        Arrays.copyOfRange(response, response.length - value.length, response.length));
+            }
+        });
+    }
+
+    @NotNull
+    private byte[] readUntilClose(@NotNull final String request) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            final InputStream in = socket.getInputStream();
+            final ByteArrayOutputStream response = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                response.write(buffer, 0, read);
+            }
+            return response.toByteArray();
+        }
+    }
 }
@@ -0,0 +1,165 @@
+package ru.mail.polis.alexantufiev.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.alexantufiev.entity.BytesEntity;
+import ru.mail.polis.alexantufiev.entity.Record;
+import ru.mail.polis.alexantufiev.entity.ReplicaResponse;
+import ru.mail.polis.alexantufiev.entity.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link KVDaoImpl}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class KVDaoImplTest {
+
+    private File data;
+    private KVDaoImpl dao;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        data = Files.createTempDirectory("highload-kv").toFile();
+        dao = new KVDaoImpl(data);
+        for (String key : Arrays.asList("a", "b", "c", "d", "e")) {
+            dao.upsert(bytes(key), bytes("value-" + key));
+        }
+        dao.remove(bytes("c"));
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        dao.close();
+        try (Stream<Path> paths = Files.walk(data.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void rangeSkipsTombstones() {
+        assertEquals(Arrays.asList("b", "d"), keys(dao.range(bytes("b"), bytes("e"))), "Range must skip tombstones.");
+    }
+
+    @Test
+    void rangeWithoutEnd() {
+        assertEquals(Arrays.asList("d", "e"), keys(dao.range(bytes("cc"), null)), "Range must reach the end.");
+    }
+
+    @Test
+    void rangeOfManyPages() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String key = String.format("page-%03d", i);
+            dao.upsert(bytes(key), new byte[1024]);
+            expected.add(key);
+        }
+        RecordIterator records = dao.range(bytes("page-"), bytes("page-~"));
+        assertEquals(expected.get(0), new String(records.next().getKey(), StandardCharsets.UTF_8), "First key.");
+        dao.remove(bytes(expected.get(199)));
+        dao.upsert(bytes("page-~"), bytes("after end"));
+
+        assertEquals(expected.subList(1, 199), keys(records), "Range must continue after the last key of a page.");
+    }
+
+    @Test
+    void deleteBeforeWriteIsKept() {
+        byte[] key = bytes("f");
+        dao.upsert(key, new BytesEntity(new byte[0], 10L, true));
+        dao.upsert(key, new BytesEntity(bytes("value-f"), 5L, false));
+
+        assertThrows(NoSuchElementException.class, () -> dao.get(key), "Older write must not revive the key.");
+        assertTrue(dao.getEntity(key).isDeleted(), "Tombstone must be stored for an unseen key.");
+        assertEquals(0, dao.getEntity(key).getBytes().length, "Tombstone must not keep the value.");
+    }
+
+    @Test
+    void sameTimeIsResolvedInAnyOrder() {
+        BytesEntity smaller = new BytesEntity(bytes("x"), 20L, false);
+        BytesEntity greater = new BytesEntity(bytes("y"), 20L, false);
+        BytesEntity tombstone = new BytesEntity(new byte[0], 20L, true);
+        dao.upsert(bytes("f"), smaller);
+        dao.upsert(bytes("f"), greater);
+        dao.upsert(Collections.singletonList(new Record(bytes("g"), greater)));
+        dao.upsert(Collections.singletonList(new Record(bytes("g"), smaller)));
+        ReplicaResponse newest = ReplicaResponse.exist(bytes("y"), 20L, 0)
+            .newest(ReplicaResponse.exist(bytes("x"), 20L, 0));
+
+        assertEquals("y", new String(dao.get(bytes("f")), StandardCharsets.UTF_8), "Greater value must win.");
+        assertEquals("y", new String(dao.get(bytes("g")), StandardCharsets.UTF_8), "Order must not matter.");
+        assertEquals("y", new String(newest.getBytes(), StandardCharsets.UTF_8), "Coordinator must agree.");
+
+        dao.upsert(bytes("f"), tombstone);
+        dao.upsert(bytes("g"), tombstone);
+        dao.upsert(bytes("g"), greater);
+        newest = ReplicaResponse.deleted(20L, 0).newest(ReplicaResponse.exist(bytes("y"), 20L, 0));
+
+        assertTrue(dao.getEntity(bytes("f")).isDeleted(), "Tombstone must win over a value.");
+        assertTrue(dao.getEntity(bytes("g")).isDeleted(), "Value must not revive the key.");
+        assertEquals(State.DELETED, newest.getState(), "Coordinator must agree.");
+    }
+
+    @Test
+    void purgeOnlyOldTombstones() {
+        dao.upsert(bytes("f"), new BytesEntity(new byte[0], 10L, true));
+        long before = BytesEntity.currentTime();
+        dao.remove(bytes("a"));
+
+        assertEquals(2, dao.purgeTombstones(before), "Tombstones written before must be dropped.");
+        assertThrows(NoSuchElementException.class, () -> dao.getEntity(bytes("f")), "Tombstone must be dropped.");
+        assertTrue(dao.getEntity(bytes("a")).isDeleted(), "New tombstone must be kept.");
+        assertEquals("value-b", new String(dao.get(bytes("b")), StandardCharsets.UTF_8), "Values must be kept.");
+    }
+
+    @Test
+    void hashRangeReadsOnlyItsRecords() {
+        MerkleTree tree = new MerkleTree(2);
+        List<String> all = new ArrayList<>();
+        for (int bucket = 0; bucket < 4; bucket++) {
+            List<String> keys = keys(dao.hashRange(tree.getFirstHash(bucket), tree.getEndHash(bucket), null));
+            for (String key : keys) {
+                assertEquals(bucket, tree.getBucket(bytes(key)), "Key must be in the range of its hash.");
+            }
+            all.addAll(keys);
+        }
+        all.sort(Comparator.naturalOrder());
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), all, "All records and tombstones must be found.");
+
+        int bucket = tree.getBucket(bytes("a"));
+        List<String> keys = keys(dao.hashRange(tree.getFirstHash(bucket), tree.getEndHash(bucket), null));
+        List<String> rest = keys(dao.hashRange(tree.getFirstHash(bucket), tree.getEndHash(bucket), bytes("a")));
+        assertEquals(keys.subList(keys.indexOf("a") + 1, keys.size()), rest, "Range must continue after the key.");
+    }
+
+    private static List<String> keys(RecordIterator records) {
+        List<String> keys = new ArrayList<>();
+        while (records.hasNext()) {
+            Record record = records.next();
+            keys.add(new String(record.getKey(), StandardCharsets.UTF_8));
+        }
+        return keys;
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.mail.polis.alexantufiev.dao;
+
+import jetbrains.exodus.ByteIterable;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.alexantufiev.entity.BytesEntity;
+import ru.mail.polis.alexantufiev.entity.Hashing;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link MerkleTree}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class MerkleTreeTest {
+
+    private static final byte[] VALUE = "value".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void orderOfWritesDoesNotMatter() {
+        MerkleTree first = new MerkleTree(4);
+        MerkleTree second = new MerkleTree(4);
+        for (int i = 0; i < 100; i++) {
+            first.update(key(i), null, record(i));
+        }
+        for (int i = 99; i >= 0; i--) {
+            second.update(key(i), null, record(i));
+        }
+
+        assertEquals(first.getHash(0, 0), second.getHash(0, 0), "Roots must be equal.");
+    }
+
+    @Test
+    void differenceIsInTheBucketOfTheKey() {
+        MerkleTree first = new MerkleTree(4);
+        MerkleTree second = new MerkleTree(4);
+        for (int i = 0; i < 100; i++) {
+            first.update(key(i), null, record(i));
+            second.update(key(i), null, record(i));
+        }
+        second.update(key(42), record(42), record(43));
+
+        int bucket = first.getBucket(key(42));
+        assertNotEquals(first.getHash(0, 0), second.getHash(0, 0), "Roots must differ.");
+        assertNotEquals(first.getHash(4, bucket), second.getHash(4, bucket), "Leaves of the key must differ.");
+        assertEquals(
+            first.getHash(4, (bucket + 1) % 16),
+            second.getHash(4, (bucket + 1) % 16),
+            "Other leaves must be equal."
+        );
+    }
+
+    @Test
+    void bucketIsRangeOfHashes() {
+        MerkleTree tree = new MerkleTree(4);
+        for (int i = 0; i < 100; i++) {
+            byte[] key = key(i);
+            long hash = Hashing.hash(key, 0, key.length);
+            int bucket = tree.getBucket(key);
+            long end = tree.getEndHash(bucket);
+            assertTrue(Long.compareUnsigned(tree.getFirstHash(bucket), hash) <= 0, "Hash must not be before bucket.");
+            assertTrue(end == 0 || Long.compareUnsigned(hash, end) < 0, "Hash must be before the end of bucket.");
+        }
+        assertEquals(0, tree.getEndHash(15), "Last bucket must end with the greatest hash.");
+        assertEquals(0, new MerkleTree(0).getEndHash(0), "Root must end with the greatest hash.");
+    }
+
+    @Test
+    void removedRecordIsForgotten() {
+        MerkleTree tree = new MerkleTree(4);
+        tree.update(key(1), null, record(1));
+        tree.update(key(1), record(1), null);
+
+        assertEquals(0, tree.getHash(0, 0), "Tree without records must be empty.");
+    }
+
+    private static byte[] key(int i) {
+        return ("key" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ByteIterable record(long time) {
+        return BytesEntity.toByteIterable(VALUE, time, false);
+    }
+}
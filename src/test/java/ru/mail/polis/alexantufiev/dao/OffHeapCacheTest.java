@@ -0,0 +1,144 @@
+package ru.mail.polis.alexantufiev.dao;
+
+import jetbrains.exodus.ByteIterable;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.alexantufiev.entity.BytesEntity;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link OffHeapCache}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class OffHeapCacheTest {
+
+    private static final long CAPACITY = 1024 * 1024;
+
+    @Test
+    void getCachedRecord() {
+        OffHeapCache cache = new OffHeapCache(CAPACITY);
+        ByteIterable record = record(new byte[1000], 1L);
+        cache.put(key(1), record);
+
+        assertArrayEquals(record.getBytesUnsafe(), cache.get(key(1)), "Record must be cached.");
+        assertNull(cache.get(key(2)), "Other key must not be cached.");
+    }
+
+    @Test
+    void olderRecordDoesNotReplaceNewer() {
+        OffHeapCache cache = new OffHeapCache(CAPACITY);
+        ByteIterable newer = record(value("newer"), 2L);
+        cache.put(key(1), newer);
+        cache.put(key(1), record(value("older"), 1L));
+
+        assertArrayEquals(newer.getBytesUnsafe(), cache.get(key(1)), "Newer record must be kept.");
+    }
+
+    @Test
+    void removeRecord() {
+        OffHeapCache cache = new OffHeapCache(CAPACITY);
+        cache.put(key(1), record(value("value"), 1L));
+        cache.remove(key(1));
+
+        assertNull(cache.get(key(1)), "Record must be removed.");
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        OffHeapCache cache = new OffHeapCache(CAPACITY);
+        cache.put(key(0), record(value("hot"), 1L));
+        for (int i = 1; i < 10_000; i++) {
+            assertNotNull(cache.get(key(0)), "Recently used record must be kept.");
+            cache.put(key(i), record(new byte[500], 1L));
+        }
+
+        assertNull(cache.get(key(1)), "Least recently used record must be evicted.");
+    }
+
+    @Test
+    void removeKeepsOtherRecords() {
+        OffHeapCache cache = new OffHeapCache(CAPACITY);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(key(i), record(value("value" + i), 1L));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            cache.remove(key(i));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            byte[] cached = cache.get(key(i));
+            if (i % 2 == 0) {
+                assertNull(cached, "Record must be removed.");
+            } else {
+                assertArrayEquals(record(value("value" + i), 1L).getBytesUnsafe(), cached, "Record must be kept.");
+            }
+        }
+    }
+
+    @Test
+    void keyLongerThanBlock() {
+        OffHeapCache cache = new OffHeapCache(CAPACITY);
+        byte[] key = new byte[300];
+        key[299] = 1;
+        ByteIterable record = record(value("value"), 1L);
+        cache.put(key, record);
+
+        assertArrayEquals(record.getBytesUnsafe(), cache.get(key), "Record must be cached.");
+        key[299] = 2;
+        assertNull(cache.get(key), "Other key must not be cached.");
+    }
+
+    @Test
+    void smallRecordsDoNotGrowHeap() {
+        int count = 100_000;
+        OffHeapCache cache = new OffHeapCache(32 * 1024 * 1024);
+        long before = usedHeap();
+        for (int i = 0; i < count; i++) {
+            cache.put(key(i), record(value("value"), 1L));
+        }
+        long growth = usedHeap() - before;
+
+        for (int i = 0; i < count; i++) {
+            assertNotNull(cache.get(key(i)), "Record must be cached.");
+        }
+        assertTrue(growth < 1024 * 1024, "Heap must not grow with count of records, but grew by " + growth);
+    }
+
+    @Test
+    void disabledCache() {
+        OffHeapCache cache = new OffHeapCache(0);
+        cache.put(key(1), record(value("value"), 1L));
+
+        assertFalse(cache.isEnabled(), "Cache must be disabled.");
+        assertNull(cache.get(key(1)), "Disabled cache must not keep records.");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static byte[] key(int i) {
+        return ("key" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] value(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ByteIterable record(byte[] value, long time) {
+        return BytesEntity.toByteIterable(value, time, false);
+    }
+}
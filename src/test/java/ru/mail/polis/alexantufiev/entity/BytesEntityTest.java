@@ -0,0 +1,91 @@
+package ru.mail.polis.alexantufiev.entity;
+
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link BytesEntity}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class BytesEntityTest {
+
+    private static final byte[] VALUE = "value".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void encodeAndDecode() {
+        long time = BytesEntity.currentTime();
+        ByteIterable record = BytesEntity.toByteIterable(VALUE, time, false);
+
+        assertEquals(BytesEntity.HEADER_LENGTH + VALUE.length, record.getLength(), "Header must take 10 bytes.");
+        assertFalse(BytesEntity.isDeleted(record), "Record must not be deleted.");
+        assertEquals(time, BytesEntity.getTime(record), "Time must be kept.");
+        assertArrayEquals(VALUE, BytesEntity.getValue(record), "Value must be kept.");
+    }
+
+    @Test
+    void encodeDeletedEntity() {
+        BytesEntity entity = new BytesEntity(new ArrayByteIterable(new BytesEntity(VALUE, 42L, true)
+            .toByteIterable().getBytesUnsafe()));
+
+        assertTrue(entity.isDeleted(), "Record must be deleted.");
+        assertEquals(42L, entity.getTime(), "Time must be kept.");
+        assertArrayEquals(VALUE, entity.getBytes(), "Value must be kept.");
+    }
+
+    @Test
+    void encodeReplicas() {
+        ByteIterable record = BytesEntity.toByteIterable(VALUE, 42L, true, 3);
+
+        assertEquals(3, BytesEntity.getReplicas(record), "Count of replicas must be kept.");
+        assertTrue(BytesEntity.isDeleted(record), "Record must be deleted.");
+        assertEquals(
+            BytesEntity.MAX_REPLICAS,
+            BytesEntity.getReplicas(BytesEntity.toByteIterable(VALUE, 42L, false, BytesEntity.MAX_REPLICAS)),
+            "Maximal count of replicas must be kept."
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new BytesEntity(VALUE, 42L, false, BytesEntity.MAX_REPLICAS + 1),
+            "Count of replicas which does not fit must be rejected."
+        );
+    }
+
+    @Test
+    void readLegacyRecord() {
+        LocalDateTime time = LocalDateTime.of(2018, 11, 10, 12, 34, 56, 123_000_000);
+        byte[] record = ("value" + time + "\0T\0").getBytes(StandardCharsets.US_ASCII);
+
+        BytesEntity entity = BytesEntity.fromLegacy(new ArrayByteIterable(record));
+
+        assertTrue(entity.isDeleted(), "Deleted flag must be read.");
+        assertArrayEquals(VALUE, entity.getBytes(), "Value must be read.");
+        assertEquals(
+            time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+            entity.getTime() >>> 16,
+            "Time must be read."
+        );
+    }
+
+    @Test
+    void expectIllegalArgumentExceptionForShortRecord() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> BytesEntity.isDeleted(new ArrayByteIterable(new byte[3])),
+            "IllegalArgumentException must be thrown."
+        );
+    }
+}
@@ -0,0 +1,85 @@
+package ru.mail.polis.alexantufiev.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link Operation} and {@link OperationResult}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class OperationTest {
+
+    private static final byte[] KEY = "key".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] VALUE = "value".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void encodeOperations() {
+        List<Operation> operations = Operation.decode(Operation.encode(Arrays.asList(
+            new Operation(Operation.PUT, KEY, VALUE),
+            new Operation(Operation.GET, KEY, null),
+            new Operation(Operation.DELETE, KEY, null)
+        )));
+
+        assertEquals(3, operations.size(), "All operations must be decoded.");
+        assertEquals(Operation.PUT, operations.get(0).getType(), "Type must be kept.");
+        assertArrayEquals(KEY, operations.get(0).getKey(), "Key must be kept.");
+        assertArrayEquals(VALUE, operations.get(0).getValue(), "Value must be kept.");
+        assertEquals(Operation.DELETE, operations.get(2).getType(), "Order must be kept.");
+        assertEquals(0, operations.get(1).getValue().length, "Value of GET must be empty.");
+    }
+
+    @Test
+    void encodeResults() {
+        List<OperationResult> results = OperationResult.decode(OperationResult.encode(Arrays.asList(
+            new OperationResult(200, VALUE),
+            new OperationResult(404)
+        )));
+
+        assertEquals(2, results.size(), "All results must be decoded.");
+        assertEquals(200, results.get(0).getStatus(), "Status must be kept.");
+        assertArrayEquals(VALUE, results.get(0).getValue(), "Value must be kept.");
+        assertEquals(404, results.get(1).getStatus(), "Order must be kept.");
+    }
+
+    @Test
+    void rejectMalformedBatch() {
+        byte[] bytes = Operation.encode(Arrays.asList(new Operation(Operation.PUT, KEY, VALUE)));
+
+        assertThrows(IllegalArgumentException.class, () -> Operation.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+        bytes[0] = 7;
+        assertThrows(IllegalArgumentException.class, () -> Operation.decode(bytes));
+    }
+
+    @Test
+    void rejectNegativeLength() {
+        byte[] bytes = Operation.encode(Arrays.asList(new Operation(Operation.PUT, KEY, VALUE)));
+        ByteBuffer.wrap(bytes).putInt(1, -1);
+
+        assertThrows(IllegalArgumentException.class, () -> Operation.decode(bytes), "Key length must be checked.");
+    }
+
+    @Test
+    void rejectLengthGreaterThanBody() {
+        byte[] operations = Operation.encode(Arrays.asList(new Operation(Operation.PUT, KEY, VALUE)));
+        ByteBuffer.wrap(operations).putInt(1 + Integer.BYTES + KEY.length, Integer.MAX_VALUE);
+        byte[] results = OperationResult.encode(Arrays.asList(new OperationResult(200, VALUE)));
+        ByteBuffer.wrap(results).putInt(Integer.BYTES, Integer.MAX_VALUE);
+        byte[] records = Record.encode(Arrays.asList(new Record(KEY, new BytesEntity(VALUE))));
+        ByteBuffer.wrap(records).putInt(0, Integer.MAX_VALUE);
+
+        assertThrows(IllegalArgumentException.class, () -> Operation.decode(operations), "Value length is too big.");
+        assertThrows(IllegalArgumentException.class, () -> OperationResult.decode(results), "Value length is too big.");
+        assertThrows(IllegalArgumentException.class, () -> Record.decode(records), "Key length is too big.");
+    }
+}
@@ -41,6 +41,23 @@ class ReplicaTest {
         );
     }
 
+    @Test
+    void expectIllegalArgumentExceptionForTooManyNodes() {
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> Replica.of("1/" + (BytesEntity.MAX_REPLICAS + 1), 3, false).get(),
+            "IllegalArgumentException must be thrown."
+        );
+    }
+
+    @Test
+    void allNodesOfBigTopology() {
+        int countOfNodes = BytesEntity.MAX_REPLICAS + 1;
+        Replica replica = Replica.of("1/" + countOfNodes, countOfNodes, false).get();
+
+        assertEquals(countOfNodes, replica.getCountOfNodes(), "All nodes of a big topology must be requested.");
+    }
+
     @Test
     void getEmptyReplicaNode() {
         int countOfNodes = 1;
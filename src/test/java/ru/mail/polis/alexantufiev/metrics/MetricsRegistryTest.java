@@ -0,0 +1,57 @@
+package ru.mail.polis.alexantufiev.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link MetricsRegistry}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class MetricsRegistryTest {
+
+    @Test
+    void scrapeInTextFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter errors = registry.counter("kv_errors_total", "Errors.", "status", "500");
+        registry.gauge("kv_down", "Down.", () -> 1, "peer", "http://localhost:8080");
+        errors.increment();
+        errors.increment();
+
+        String metrics = registry.scrape();
+        assertTrue(metrics.contains("# HELP kv_errors_total Errors.\n# TYPE kv_errors_total counter\n"), metrics);
+        assertTrue(metrics.contains("kv_errors_total{status=\"500\"} 2.0\n"), metrics);
+        assertTrue(metrics.contains("kv_down{peer=\"http://localhost:8080\"} 1.0\n"), metrics);
+    }
+
+    @Test
+    void quantilesOfIntervalAndCumulativeCount() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Timer timer = registry.timer("kv_request_seconds", "Latency.", "method", "GET");
+        timer.record(TimeUnit.MILLISECONDS.toNanos(2));
+        timer.record(TimeUnit.MINUTES.toNanos(2));
+
+        String metrics = registry.scrape();
+        assertTrue(metrics.contains("# TYPE kv_request_seconds summary\n"), metrics);
+        assertTrue(metrics.contains("kv_request_seconds_count{method=\"GET\"} 2\n"), metrics);
+        assertTrue(metrics.contains("kv_request_seconds{method=\"GET\",quantile=\"0.5\"} 0.002"), metrics);
+
+        metrics = registry.scrape();
+        assertTrue(metrics.contains("kv_request_seconds{method=\"GET\",quantile=\"0.5\"} NaN\n"), metrics);
+        assertTrue(metrics.contains("kv_request_seconds_count{method=\"GET\"} 2\n"), metrics);
+    }
+
+    @Test
+    void sameNameOfAnotherType() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("kv_requests", "Requests.");
+        assertThrows(IllegalArgumentException.class, () -> registry.gauge("kv_requests", "Requests.", () -> 0));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("kv_other_total", "Other.", "peer"));
+    }
+}
@@ -0,0 +1,38 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link AccessLog}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class AccessLogTest {
+
+    @Test
+    void keyHashIsHashOfId() {
+        int expected = "key1".hashCode();
+        assertEquals(expected, AccessLog.keyHash("/v0/entity?id=key1"), "Only parameter.");
+        assertEquals(expected, AccessLog.keyHash("/v0/entity?id=key1&replicas=2/3"), "First parameter.");
+        assertEquals(expected, AccessLog.keyHash("/v0/entity?replicas=2/3&id=key1"), "Last parameter.");
+        assertEquals("".hashCode(), AccessLog.keyHash("/v0/entity?uid=key1"), "Other parameter is not id.");
+    }
+
+    @Test
+    void sampling() {
+        AccessLog disabled = new AccessLog("access-log-test", 0, 16);
+        assertFalse(disabled.isEnabled(), "Log must be disabled.");
+        assertFalse(disabled.isSampled(), "Disabled log samples nothing.");
+
+        AccessLog all = new AccessLog("access-log-test", 1, 16);
+        assertTrue(all.isEnabled(), "Log must be enabled.");
+        assertTrue(all.isSampled(), "Every request must be sampled.");
+        all.stop();
+    }
+}
@@ -0,0 +1,51 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link CircuitBreaker}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class CircuitBreakerTest {
+
+    private static final long PERIOD = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void openAfterFailuresInRow() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertTrue(breaker.allowRequest(0), "Failures must be counted in a row.");
+
+        breaker.onFailure();
+        assertFalse(breaker.allowRequest(0), "Circuit must be opened.");
+
+        breaker.onHeartbeat(PERIOD);
+        assertTrue(breaker.allowRequest(PERIOD), "Heartbeat must close circuit.");
+    }
+
+    @Test
+    void openWhenHeartbeatsAreLate() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        for (int i = 1; i <= 10; i++) {
+            breaker.onHeartbeat(i * PERIOD);
+        }
+        assertTrue(breaker.allowRequest(12 * PERIOD), "Late heartbeat must be tolerated.");
+        assertFalse(breaker.allowRequest(40 * PERIOD), "Peer without heartbeats must be suspected.");
+        assertTrue(breaker.isOpen(), "Circuit must stay open.");
+
+        breaker.onHeartbeat(41 * PERIOD);
+        assertTrue(breaker.allowRequest(41 * PERIOD), "Heartbeat must close circuit.");
+    }
+}
@@ -0,0 +1,98 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link ConsistentHashRing}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class ConsistentHashRingTest {
+
+    private static final int VIRTUAL_NODES = 128;
+    private static final int KEYS = 30_000;
+
+    private static Set<String> topology(int count) {
+        Set<String> topology = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            topology.add("http://localhost:" + (8080 + i));
+        }
+        return topology;
+    }
+
+    private static byte[] key(int i) {
+        return Integer.toHexString(i * 31 + 7).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void getDistinctNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(topology(3), VIRTUAL_NODES);
+        List<String> nodes = ring.getNodes(key(1), 3);
+
+        assertEquals(3, nodes.size(), "All nodes must be returned.");
+        assertEquals(3, new HashSet<>(nodes).size(), "Nodes must be distinct.");
+    }
+
+    @Test
+    void countIsLimitedByTopology() {
+        ConsistentHashRing ring = new ConsistentHashRing(topology(2), VIRTUAL_NODES);
+
+        assertEquals(2, ring.getNodes(key(1), 5).size(), "Count of nodes must be limited by topology.");
+    }
+
+    @Test
+    void placementDoesNotDependOnTopologyOrder() {
+        Set<String> topology = topology(3);
+        List<String> reversed = Arrays.asList(topology.toArray(new String[0]));
+        Collections.reverse(reversed);
+        ConsistentHashRing ring = new ConsistentHashRing(topology, VIRTUAL_NODES);
+        ConsistentHashRing other = new ConsistentHashRing(new LinkedHashSet<>(reversed), VIRTUAL_NODES);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.getNodes(key(i), 2), other.getNodes(key(i), 2), "Placement must be the same on all nodes.");
+        }
+    }
+
+    @Test
+    void keysAreSpreadEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(topology(3), VIRTUAL_NODES);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.getNodes(key(i), 1).get(0), 1, Integer::sum);
+        }
+
+        assertEquals(3, counts.size(), "Every node must own keys.");
+        for (int count : counts.values()) {
+            assertTrue(Math.abs(count - KEYS / 3) < KEYS / 3 / 5, "Keys must be spread evenly: " + counts);
+        }
+    }
+
+    @Test
+    void addingNodeMovesFewKeys() {
+        ConsistentHashRing ring = new ConsistentHashRing(topology(3), VIRTUAL_NODES);
+        ConsistentHashRing extended = new ConsistentHashRing(topology(4), VIRTUAL_NODES);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            if (!ring.getNodes(key(i), 1).equals(extended.getNodes(key(i), 1))) {
+                moved++;
+            }
+        }
+
+        assertTrue(moved < KEYS / 3, "About 1/4 of keys must be moved, but moved " + moved);
+    }
+}
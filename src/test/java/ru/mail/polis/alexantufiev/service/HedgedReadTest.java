@@ -0,0 +1,99 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link HedgedRead} and {@link HedgeBudget}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class HedgedReadTest {
+
+    private static final List<String> NODES = Arrays.asList("a", "b", "c");
+
+    private final Map<String, CompletableFuture<String>> requests = new ConcurrentHashMap<>();
+    private ScheduledExecutorService timer;
+
+    @BeforeEach
+    void start() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void stop() {
+        timer.shutdownNow();
+    }
+
+    private HedgedRead<String> read(long delayMillis, HedgeBudget budget) {
+        return new HedgedRead<>(
+            NODES,
+            2,
+            node -> requests.computeIfAbsent(node, key -> new CompletableFuture<>()),
+            node -> TimeUnit.MILLISECONDS.toNanos(delayMillis),
+            budget,
+            timer
+        );
+    }
+
+    @Test
+    void requestOnlyAck() {
+        CompletableFuture<List<String>> result = read(TimeUnit.MINUTES.toMillis(1), new HedgeBudget(100, 1)).start();
+
+        assertEquals(2, requests.size(), "Only ack replicas must be requested.");
+        requests.get("a").complete("a");
+        requests.get("b").complete("b");
+        assertEquals(Arrays.asList("a", "b"), result.join(), "Answers must be collected.");
+    }
+
+    @Test
+    void replaceFailedReplica() {
+        CompletableFuture<List<String>> result = read(TimeUnit.MINUTES.toMillis(1), new HedgeBudget(0, 0)).start();
+
+        requests.get("a").completeExceptionally(new IllegalStateException());
+        assertTrue(requests.containsKey("c"), "Failed replica must be replaced without budget.");
+        requests.get("b").complete("b");
+        requests.get("c").complete("c");
+        assertEquals(Arrays.asList("b", "c"), result.join(), "Answers of other replicas must be used.");
+    }
+
+    @Test
+    void hedgeSlowReplica() {
+        CompletableFuture<List<String>> result = read(1, new HedgeBudget(100, 1)).start();
+
+        requests.get("b").complete("b");
+        requests.computeIfAbsent("c", key -> new CompletableFuture<>()).complete("c");
+        assertEquals(Arrays.asList("b", "c"), result.join(), "Slow replica must be hedged.");
+        assertFalse(requests.get("a").isDone(), "Slow replica must not be waited for.");
+    }
+
+    @Test
+    void limitHedges() {
+        HedgeBudget budget = new HedgeBudget(10, 1);
+        for (int i = 0; i < 9; i++) {
+            budget.onRequest();
+        }
+        assertFalse(budget.tryAcquire(), "Hedge must be earned.");
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+        assertTrue(budget.tryAcquire(), "Earned hedge must be allowed.");
+        assertFalse(budget.tryAcquire(), "Saved hedges must be limited.");
+    }
+}
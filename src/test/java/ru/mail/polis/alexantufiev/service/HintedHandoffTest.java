@@ -0,0 +1,129 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.alexantufiev.dao.KVDaoImpl;
+import ru.mail.polis.alexantufiev.entity.BytesEntity;
+import ru.mail.polis.alexantufiev.entity.Record;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link HintedHandoff}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class HintedHandoffTest {
+
+    private static final String NODE = "http://localhost:8080";
+    private static final byte[] KEY = "key".getBytes(StandardCharsets.UTF_8);
+
+    private final List<BytesEntity> delivered = new ArrayList<>();
+    private int countOfWrites;
+    private File data;
+    private KVDaoImpl dao;
+    private boolean isAvailable;
+    private BytesEntity newerHint;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        data = Files.createTempDirectory("highload-kv").toFile();
+        dao = new KVDaoImpl(data);
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        dao.close();
+        try (Stream<Path> paths = Files.walk(data.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private HintedHandoff hintedHandoff() {
+        return new HintedHandoff(
+            "hinted-handoff-test",
+            dao,
+            Collections.singleton(NODE),
+            node -> isAvailable,
+            (node, hints) -> {
+                countOfWrites++;
+                for (Record hint : hints) {
+                    delivered.add(hint.getEntity());
+                    if (newerHint != null) {
+                        dao.addHint(node, hint.getKey(), newerHint);
+                        newerHint = null;
+                    }
+                }
+            },
+            100
+        );
+    }
+
+    @Test
+    void replayOnlyToAvailableNode() {
+        HintedHandoff hintedHandoff = hintedHandoff();
+        hintedHandoff.addHint(NODE, KEY, new BytesEntity(KEY, 10L, false));
+
+        hintedHandoff.replay();
+        assertTrue(delivered.isEmpty(), "Hint must not be sent to an unavailable node.");
+        assertEquals(1, dao.getHints(NODE, 100).size(), "Hint must be kept.");
+
+        isAvailable = true;
+        hintedHandoff.replay();
+        assertEquals(1, delivered.size(), "Hint must be sent to an available node.");
+        assertEquals(10L, delivered.get(0).getTime(), "Version must be kept.");
+        assertTrue(dao.getHints(NODE, 100).isEmpty(), "Delivered hint must be removed.");
+
+        hintedHandoff.replay();
+        assertEquals(1, delivered.size(), "Removed hint must not be sent again.");
+    }
+
+    @Test
+    void keepNewerHintWrittenDuringReplay() {
+        HintedHandoff hintedHandoff = hintedHandoff();
+        hintedHandoff.addHint(NODE, KEY, new BytesEntity(KEY, 10L, false));
+        newerHint = new BytesEntity(new byte[0], 20L, true);
+        isAvailable = true;
+
+        hintedHandoff.replay();
+        List<Record> hints = dao.getHints(NODE, 100);
+        assertEquals(1, hints.size(), "Newer hint must not be removed with the delivered one.");
+        assertArrayEquals(KEY, hints.get(0).getKey(), "Key must be kept.");
+        assertEquals(20L, hints.get(0).getEntity().getTime(), "Newer hint must be kept.");
+
+        hintedHandoff.replay();
+        assertEquals(2, delivered.size(), "Newer hint must be sent.");
+        assertTrue(delivered.get(1).isDeleted(), "Tombstone must be sent.");
+        assertTrue(dao.getHints(NODE, 100).isEmpty(), "Newer hint must be removed after its delivery.");
+    }
+
+    @Test
+    void sendPageByOneWrite() {
+        HintedHandoff hintedHandoff = hintedHandoff();
+        for (int i = 0; i < 250; i++) {
+            hintedHandoff.addHint(NODE, ("key" + i).getBytes(StandardCharsets.UTF_8), new BytesEntity(KEY, 10L, false));
+        }
+        isAvailable = true;
+
+        hintedHandoff.replay();
+        assertEquals(250, delivered.size(), "All hints must be sent.");
+        assertEquals(3, countOfWrites, "Every page of hints must be sent by one write.");
+        assertTrue(dao.getHints(NODE, 100).isEmpty(), "Delivered hints must be removed.");
+    }
+}
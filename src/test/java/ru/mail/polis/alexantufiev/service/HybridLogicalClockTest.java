@@ -0,0 +1,46 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link HybridLogicalClock}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class HybridLogicalClockTest {
+
+    @Test
+    void timestampsGrow() {
+        HybridLogicalClock clock = new HybridLogicalClock();
+        long previous = clock.now();
+        for (int i = 0; i < 100_000; i++) {
+            long next = clock.now();
+            assertTrue(next > previous, "Timestamps must strictly grow.");
+            previous = next;
+        }
+    }
+
+    @Test
+    void timestampIsGreaterThanRemote() {
+        HybridLogicalClock clock = new HybridLogicalClock();
+        long remote = (System.currentTimeMillis() + 60_000) << 16;
+
+        clock.update(remote);
+
+        assertTrue(clock.now() > remote, "Timestamp must be greater than the observed one.");
+    }
+
+    @Test
+    void oldRemoteTimestampIsIgnored() {
+        HybridLogicalClock clock = new HybridLogicalClock();
+        long time = clock.now();
+
+        clock.update(1L);
+
+        assertTrue(clock.now() > time, "Old remote timestamp must not move the clock back.");
+    }
+}
@@ -0,0 +1,80 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link LatencyTracker}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class LatencyTrackerTest {
+
+    private static final long PRIOR = 10;
+    private static final long FAILURE = 10_000;
+
+    private static void request(LatencyTracker tracker, long nanos) {
+        tracker.begin();
+        tracker.end(nanos);
+    }
+
+    @Test
+    void percentileOfRecentLatencies() {
+        LatencyTracker tracker = new LatencyTracker(0.95, PRIOR, FAILURE);
+        assertEquals(7, tracker.getPercentileNanos(7), "Default must be used without samples.");
+
+        for (int i = 1; i <= 128; i++) {
+            request(tracker, i);
+        }
+        assertEquals(122, tracker.getPercentileNanos(7), "Percentile must be computed.");
+
+        for (int i = 0; i < 256; i++) {
+            request(tracker, 1000);
+        }
+        assertEquals(1000, tracker.getPercentileNanos(7), "Old latencies must be forgotten.");
+    }
+
+    @Test
+    void slowOrBusyNodeHasWorseScore() {
+        LatencyTracker fast = new LatencyTracker(0.95, PRIOR, FAILURE);
+        LatencyTracker slow = new LatencyTracker(0.95, PRIOR, FAILURE);
+        for (int i = 0; i < 10; i++) {
+            request(fast, 100);
+            request(slow, 1000);
+        }
+        assertTrue(fast.getScore() < slow.getScore(), "Slow node must have worse score.");
+
+        for (int i = 0; i < 20; i++) {
+            fast.begin();
+        }
+        assertEquals(20, fast.getInFlight(), "Requests in flight must be counted.");
+        assertTrue(fast.getScore() > slow.getScore(), "Busy node must have worse score.");
+
+        fast.fail();
+        assertEquals(19, fast.getInFlight(), "Failed request must not be in flight.");
+    }
+
+    @Test
+    void nodeWhichOnlyFailsHasWorseScore() {
+        LatencyTracker unknown = new LatencyTracker(0.95, PRIOR, FAILURE);
+        LatencyTracker failing = new LatencyTracker(0.95, PRIOR, FAILURE);
+        LatencyTracker answering = new LatencyTracker(0.95, PRIOR, FAILURE);
+        assertEquals(PRIOR, unknown.getAverageNanos(), "Prior must be used without samples.");
+
+        unknown.begin();
+        assertTrue(unknown.getScore() > failing.getScore(), "Requests in flight must be counted without samples.");
+        unknown.fail();
+
+        for (int i = 0; i < 10; i++) {
+            request(answering, 1000);
+            failing.begin();
+            failing.fail();
+        }
+        assertTrue(failing.getScore() > answering.getScore(), "Node which only fails must have worse score.");
+        assertEquals(-1, failing.getPercentileNanos(-1), "Failure must not be a sample of the percentile.");
+    }
+}
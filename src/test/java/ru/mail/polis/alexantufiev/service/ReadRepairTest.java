@@ -0,0 +1,62 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link ReadRepair}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class ReadRepairTest {
+
+    @Test
+    void dropWhenQueueIsFull() throws InterruptedException {
+        ReadRepair readRepair = new ReadRepair("read-repair-test", 1, Integer.MAX_VALUE);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        try {
+            assertTrue(readRepair.submit(() -> {
+                started.countDown();
+                await(release);
+                done.countDown();
+            }), "Repair must be run.");
+            assertTrue(started.await(1, TimeUnit.MINUTES), "Repair must be started.");
+            assertTrue(readRepair.submit(done::countDown), "Repair must be queued.");
+            assertFalse(readRepair.submit(done::countDown), "Repair must be dropped if the queue is full.");
+
+            release.countDown();
+            assertTrue(done.await(1, TimeUnit.MINUTES), "Queued repair must be run.");
+        } finally {
+            release.countDown();
+            readRepair.stop();
+        }
+    }
+
+    @Test
+    void dropOverRateLimit() {
+        ReadRepair readRepair = new ReadRepair("read-repair-test", 16, 1);
+        try {
+            assertTrue(readRepair.submit(() -> { }), "First repair of a second must be run.");
+            assertFalse(readRepair.submit(() -> { }), "Repair over the rate must be dropped.");
+        } finally {
+            readRepair.stop();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link RpcFrame}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class RpcFrameTest {
+
+    private static final byte[] KEY = "key".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void readFrames() throws IOException {
+        byte[] first = new RpcFrame(1, RpcFrame.GET, KEY).encode();
+        byte[] second = new RpcFrame(2, RpcFrame.NOT_FOUND).encode();
+        ByteBuffer buffer = ByteBuffer.allocate(first.length + second.length).put(first).put(second);
+        buffer.flip();
+
+        RpcFrame frame = RpcFrame.read(buffer);
+        assertEquals(1, frame.getId(), "Id must be kept.");
+        assertEquals(RpcFrame.GET, frame.getCode(), "Code must be kept.");
+        assertArrayEquals(KEY, frame.getPayload(), "Payload must be kept.");
+        frame = RpcFrame.read(buffer);
+        assertEquals(2, frame.getId(), "Next frame must be read.");
+        assertEquals(0, frame.getPayload().length, "Payload must be empty.");
+        assertFalse(buffer.hasRemaining(), "All bytes must be read.");
+    }
+
+    @Test
+    void encodeSliceOfPayload() throws IOException {
+        byte[] record = "recordkeyend".getBytes(StandardCharsets.UTF_8);
+        RpcFrame slice = new RpcFrame(1, RpcFrame.OK, record, 6, KEY.length);
+        byte[] header = slice.encodeHeader();
+        ByteBuffer buffer = ByteBuffer.allocate(header.length + KEY.length).put(header).put(record, 6, KEY.length);
+        buffer.flip();
+
+        assertArrayEquals(buffer.array(), slice.encode(), "Header and slice must be the whole frame.");
+        assertArrayEquals(KEY, RpcFrame.read(buffer).getPayload(), "Only the slice must be sent.");
+        assertArrayEquals(KEY, slice.getPayload(), "Slice must be copied.");
+    }
+
+    @Test
+    void waitForCompleteFrame() throws IOException {
+        byte[] bytes = new RpcFrame(1, RpcFrame.PUT, KEY).encode();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, bytes.length - 1);
+
+        assertNull(RpcFrame.read(buffer), "Incomplete frame must not be read.");
+        assertEquals(0, buffer.position(), "Position must not be moved.");
+        assertNull(RpcFrame.read(ByteBuffer.wrap(bytes, 0, RpcFrame.HEADER_SIZE - 1)), "Header must be complete.");
+    }
+
+    @Test
+    void rejectMalformedLength() {
+        ByteBuffer buffer = ByteBuffer.wrap(new RpcFrame(1, RpcFrame.PUT, KEY).encode());
+        buffer.putInt(0, -1);
+
+        assertThrows(IOException.class, () -> RpcFrame.read(buffer));
+    }
+
+    @Test
+    void rejectTooBigLength() {
+        ByteBuffer buffer = ByteBuffer.wrap(new RpcFrame(1, RpcFrame.PUT, KEY).encode());
+        buffer.putInt(0, RpcFrame.MAX_PAYLOAD_SIZE + 1);
+
+        assertThrows(IOException.class, () -> RpcFrame.read(buffer));
+    }
+
+    @Test
+    void splitAndJoinBigPayload() throws IOException {
+        byte[] payload = new byte[2 * RpcFrame.MAX_PAYLOAD_SIZE + 1];
+        ThreadLocalRandom.current().nextBytes(payload);
+        List<RpcFrame> parts = new RpcFrame(7, RpcFrame.PUT, payload).split();
+        assertEquals(3, parts.size(), "Payload must be split by the limit of a frame.");
+
+        RpcFrame.Assembler assembler = new RpcFrame.Assembler();
+        RpcFrame message = null;
+        for (RpcFrame part : parts) {
+            assertNull(message, "Message must be joined only from the last frame.");
+            ByteBuffer buffer = ByteBuffer.wrap(part.encode());
+            message = assembler.add(RpcFrame.read(buffer));
+        }
+        assertEquals(7, message.getId(), "Id must be kept.");
+        assertEquals(RpcFrame.PUT, message.getCode(), "Code must be kept without the flag.");
+        assertArrayEquals(payload, message.getPayload(), "Payload must be joined.");
+
+        RpcFrame small = new RpcFrame(8, RpcFrame.GET, KEY);
+        assertSame(small, small.split().get(0), "Small frame must not be split.");
+        assertSame(small, assembler.add(small), "Whole frame must be given as is.");
+    }
+
+    @Test
+    void rejectFrameInSplitMessage() throws IOException {
+        RpcFrame.Assembler assembler = new RpcFrame.Assembler();
+        assertNull(assembler.add(new RpcFrame(1, (byte) (RpcFrame.PUT | RpcFrame.MORE), KEY)), "Part must be kept.");
+
+        assertThrows(IOException.class, () -> assembler.add(new RpcFrame(2, RpcFrame.GET, KEY)));
+    }
+
+    @Test
+    void rejectTooBigMessage() throws IOException {
+        RpcFrame.Assembler assembler = new RpcFrame.Assembler();
+        byte[] payload = new byte[RpcFrame.MAX_PAYLOAD_SIZE];
+        RpcFrame part = new RpcFrame(1, (byte) (RpcFrame.PUT | RpcFrame.MORE), payload);
+        for (int i = 0; i < RpcFrame.MAX_MESSAGE_SIZE / RpcFrame.MAX_PAYLOAD_SIZE; i++) {
+            assertNull(assembler.add(part), "Part must be kept.");
+        }
+
+        assertThrows(IOException.class, () -> assembler.add(part));
+    }
+}
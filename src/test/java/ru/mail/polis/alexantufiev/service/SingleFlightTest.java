@@ -0,0 +1,98 @@
+package ru.mail.polis.alexantufiev.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link SingleFlight}.
+ *
+ * @author Aleksey Antufev
+ * @version 1.6.0
+ * @since 1.6.0 18.10.2026
+ */
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallsShareResult() {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        CompletableFuture<String> call = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> first = flights.execute("key", 1, () -> {
+            calls.incrementAndGet();
+            return call;
+        });
+        CompletableFuture<String> second = flights.execute("key", 1, () -> {
+            calls.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        call.complete("value");
+
+        assertEquals(1, calls.get(), "Concurrent calls must be coalesced.");
+        assertEquals("value", first.join(), "First caller must get the result.");
+        assertEquals("value", second.join(), "Second caller must get the result.");
+    }
+
+    @Test
+    void completedCallIsForgotten() {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        flights.execute("key", 1, () -> CompletableFuture.completedFuture("old"));
+
+        assertEquals(
+            "new",
+            flights.execute("key", 1, () -> CompletableFuture.completedFuture("new")).join(),
+            "Completed call must not be shared."
+        );
+    }
+
+    @Test
+    void otherSettingsAreNotCoalesced() {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        flights.execute("key", 1, CompletableFuture::new);
+
+        assertEquals(
+            "value",
+            flights.execute("key", 2, () -> CompletableFuture.completedFuture("value")).join(),
+            "Call with other settings must be executed."
+        );
+    }
+
+    @Test
+    void forgottenCallIsNotShared() {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        CompletableFuture<String> first = flights.execute("key", 1, CompletableFuture::new);
+        flights.forget("key");
+
+        CompletableFuture<String> second = flights.execute("key", 1, () -> CompletableFuture.completedFuture("new"));
+
+        assertFalse(first.isDone(), "Forgotten call must go on.");
+        assertEquals("new", second.join(), "Call after forget must be executed.");
+    }
+
+    @Test
+    void readAfterWriteInFlightDoesNotGetOldValue() {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        CompletableFuture<String> oldRead = new CompletableFuture<>();
+        CompletableFuture<String> first = flights.execute("key", 1, () -> oldRead);
+        CompletableFuture<Void> write = new CompletableFuture<>();
+        CompletableFuture<Void> answer = flights.forgetAfter("key", write);
+
+        CompletableFuture<String> concurrent = flights.execute("key", 1, CompletableFuture::new);
+        assertSame(first, concurrent, "Read concurrent with the write may be coalesced.");
+
+        write.complete(null);
+        assertTrue(answer.isDone(), "Write must be answered when it is done.");
+        CompletableFuture<String> after = flights.execute("key", 1, () -> CompletableFuture.completedFuture("new"));
+        oldRead.complete("old");
+
+        assertEquals("old", first.join(), "Read started before the write must get its own result.");
+        assertEquals("new", after.join(), "Read after the answer of the write must not get the old value.");
+    }
+}